@@ -0,0 +1,19 @@
+package com.blackcat.currencyedittext;
+
+import android.util.Log;
+
+/**
+ * Routes the warnings and errors of the formatting classes to logcat.
+ */
+final class AndroidLogger implements CurrencyLogger {
+
+    @Override
+    public void warn(String tag, String message) {
+        Log.w(tag, message);
+    }
+
+    @Override
+    public void error(String tag, String message) {
+        Log.e(tag, message);
+    }
+}
@@ -2,17 +2,36 @@ package com.blackcat.currencyedittext;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Typeface;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.text.InputFilter;
 import android.text.InputType;
+import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.ViewGroup;
 import android.widget.EditText;
+import android.widget.TextView;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Currency;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 @SuppressWarnings("unused")
 public class CurrencyEditText extends EditText {
 
+    static {
+        //Report the formatter's locale fallback warnings through logcat, unless the application has installed a
+        //logger of its own already (e.g. in Application.onCreate()). Applications may also replace this one afterwards.
+        CurrencyTextFormatter.setLoggerIfDefault(new AndroidLogger());
+    }
+
     private Locale currentLocale;
 
     private Locale defaultLocale = Locale.US;
@@ -21,14 +40,76 @@ public class CurrencyEditText extends EditText {
 
     private long rawValue = 0L;
 
+    //In exact mode, values too large for a long are held as the ASCII digits of their magnitude (null otherwise).
+    //They are only converted into a BigInteger when requested.
+    private boolean exactMode = false;
+    private String exactDigits = null;
+    private boolean exactNegative = false;
+
     private CurrencyTextWatcher textWatcher;
     private String hintCache = null;
 
     private int decimalDigits = 0;
 
+    //formatter, currency and symbol for the current configuration, shared with every other view configured the same way;
+    //resolved lazily and discarded whenever the configuration, or the system locale, changes
+    private CurrencyConfig config;
+    private int localeGeneration = SystemLocaleMonitor.getGeneration();
+
+    //views showing the value converted into other currencies, and the mirror each of them is showing
+    private final List<TextView> mirrorTargets = new ArrayList<>();
+    private final List<CurrencyMirror> mirrors = new ArrayList<>();
+
+    private RawValueDispatcher rawValueDispatcher;
+
+    //rejects invalid input before it reaches the text; the maximum number of significant digits, 0 for no limit of its own
+    private CurrencyInputFilter inputFilter;
+    private int maxDigits = 0;
+    //set while the view replaces its text with text it formatted itself, which the input filter lets through
+    private boolean writingText = false;
+
+    //Nothing is drawn until the view is attached, so the text for configuration changes made before then
+    //(including those made while inflating) is only formatted once, when it is.
+    private boolean attached = false;
+    private boolean textRefreshPending = false;
+
+    //With stable layout, a layout width of wrap_content is replaced by a width class a few digits wide, predicted
+    //from the cached widths of the spec's characters, so that edits only request a layout when the text changes class.
+    private static final int WIDTH_CLASS_DIGITS = 4;
+    private static final int NO_STABLE_WIDTH = Integer.MIN_VALUE;
+    private boolean stableLayout = false;
+    private int stableWidth = NO_STABLE_WIDTH;
+
+    //With auto-shrink, amounts too wide for the view are drawn at a smaller text size, predicted the same way
+    private boolean autoShrink = false;
+    private float shrinkMinTextSize = 0;
+    private float unshrunkTextSize = 0;
+    private boolean shrinkingText = false;
+
+    private GlyphWidths glyphWidths;
+
+    //runs updateTextMetrics() once a layout pass is over, as it may change the text size and layout width
+    private final Runnable textMetricsUpdate = new Runnable() {
+        @Override
+        public void run() {
+            updateTextMetrics();
+        }
+    };
+
     /*
     PUBLIC METHODS
      */
+
+    /**
+     * Enables or disables android.os.Trace sections around the processing of each edit, for all CurrencyEditText
+     * instances, so that it shows up in systrace. Has no effect below API 18. Disabled by default.
+     *
+     * To collect latency measurements, see CurrencyTextFormatter.setMetricsListener().
+     */
+    public static void setTraceSectionsEnabled(boolean enabled){
+        TraceSections.setEnabled(enabled);
+    }
+
     public CurrencyEditText(Context context, AttributeSet attrs) {
         super(context, attrs);
         init();
@@ -42,6 +123,148 @@ public class CurrencyEditText extends EditText {
         allowNegativeValues = negativeValuesAllowed;
     }
 
+    /**
+     * Registers a listener to be called on the UI thread once for each change of the raw value. See
+     * setOnRawValueChangedListener(OnRawValueChangedListener, long, Executor).
+     */
+    public void setOnRawValueChangedListener(OnRawValueChangedListener listener){
+        setOnRawValueChangedListener(listener, 0, null);
+    }
+
+    /**
+     * Registers a listener to be called once for each change of the raw value, replacing any previous listener.
+     * Values too large for a long, in exact mode, are not reported; once the value fits in a long again, the
+     * change from the last value reported is.
+     *
+     * @param listener The listener, or null to stop listening.
+     * @param coalesceMillis If greater than 0, changes are only reported once the value has not changed for this
+     *                       long, as a single change from the last value reported to the current value, so that
+     *                       rapid typing only results in one call. Changes which cancel each other out are not reported.
+     * @param executor The executor to call listener on, or null to call it on the UI thread. Use a serial
+     *                 executor if changes must be reported in order.
+     * @throws IllegalArgumentException If coalesceMillis is negative.
+     */
+    public void setOnRawValueChangedListener(OnRawValueChangedListener listener, long coalesceMillis, Executor executor){
+        if(coalesceMillis < 0){
+            throw new IllegalArgumentException("coalesceMillis must not be negative");
+        }
+        if(rawValueDispatcher != null){
+            rawValueDispatcher.cancel();
+        }
+        rawValueDispatcher = listener == null ? null : new RawValueDispatcher(listener, coalesceMillis, executor, rawValue);
+    }
+
+    /**
+     * Limits the number of significant digits the user may enter. Digits beyond the limit are discarded before
+     * they reach the text, whether typed or pasted. Unless exact mode is enabled, at most 18 digits may be entered
+     * regardless, so that every value fits in a long.
+     *
+     * @param maxDigits The maximum number of significant digits, or 0 for no limit beyond that of a long.
+     * @throws IllegalArgumentException If maxDigits is negative.
+     */
+    public void setMaxDigits(int maxDigits){
+        if(maxDigits < 0){
+            throw new IllegalArgumentException("maxDigits must not be negative");
+        }
+        this.maxDigits = maxDigits;
+    }
+
+    public int getMaxDigits(){
+        return maxDigits;
+    }
+
+    /**
+     * Keeps the view's own input filter, which rejects invalid input before it reaches the text, ahead of filters.
+     */
+    @Override
+    public void setFilters(InputFilter[] filters){
+        //called by the TextView constructor, before the input filter exists
+        if(inputFilter == null){
+            super.setFilters(filters);
+            return;
+        }
+        for(InputFilter filter : filters){
+            if(filter == inputFilter){
+                super.setFilters(filters);
+                return;
+            }
+        }
+        InputFilter[] withInputFilter = new InputFilter[filters.length + 1];
+        withInputFilter[0] = inputFilter;
+        System.arraycopy(filters, 0, withInputFilter, 1, filters.length);
+        super.setFilters(withInputFilter);
+    }
+
+    /**
+     * Enables or disables layout-stable rendering. A view whose layout width is wrap_content requests a layout of
+     * its parent on every edit, as the width of its text changes. With stable layout enabled, the view sets its
+     * layout width to a width class instead: the width of the text rounded up to a few digits, predicted from the
+     * cached widths of the characters amounts are formatted with. A layout is then only requested when the text
+     * moves to another class. The layout width is set back to wrap_content when disabled. Has no effect on views
+     * given any other layout width. Disabled by default.
+     */
+    public void setStableLayout(boolean stableLayout){
+        this.stableLayout = stableLayout;
+        updateTextMetrics();
+    }
+
+    public boolean isStableLayout(){
+        return stableLayout;
+    }
+
+    /**
+     * Enables or disables shrinking the text of amounts too wide to fit the view, down to the minimum set with
+     * setShrinkMinTextSize(). The width of the amount is predicted from the same cached character widths as stable
+     * layout, rather than measured at each size. While the layout width is wrap_content, the amount is shrunk to fit
+     * the width of the parent. Disabled by default.
+     */
+    public void setAutoShrink(boolean autoShrink){
+        this.autoShrink = autoShrink;
+        if(!autoShrink && unshrunkTextSize > 0){
+            applyTextSize(unshrunkTextSize);
+        }
+        updateTextMetrics();
+    }
+
+    public boolean isAutoShrink(){
+        return autoShrink;
+    }
+
+    /**
+     * @param minTextSize The smallest text size, in pixels, auto-shrink may draw the text at, or 0 (the default)
+     *                    for half of the text size.
+     * @throws IllegalArgumentException If minTextSize is negative.
+     */
+    public void setShrinkMinTextSize(float minTextSize){
+        if(minTextSize < 0){
+            throw new IllegalArgumentException("minTextSize must not be negative");
+        }
+        this.shrinkMinTextSize = minTextSize;
+        updateTextMetrics();
+    }
+
+    public float getShrinkMinTextSize(){
+        return shrinkMinTextSize;
+    }
+
+    /**
+     * Sets the text size, which auto-shrink scales down from.
+     */
+    @Override
+    public void setTextSize(int unit, float size){
+        super.setTextSize(unit, size);
+        if(!shrinkingText){
+            unshrunkTextSize = getTextSize();
+            updateTextMetrics();
+        }
+    }
+
+    @Override
+    public void setTypeface(Typeface typeface){
+        super.setTypeface(typeface);
+        updateTextMetrics();
+    }
+
     /**
      * Returns whether or not negative values have been allowed for this CurrencyEditText field
      */
@@ -61,11 +284,70 @@ public class CurrencyEditText extends EditText {
      *
      * @return The raw value that was input by the user, in the lowest denomination of that users
      *  deviceLocale.
+     * @throws ArithmeticException If exact mode is enabled and the value does not fit in a long. Use
+     *  getRawValueExact() instead.
      */
     public long getRawValue() {
+        if(exactDigits != null){
+            throw new ArithmeticException("Value does not fit in a long; use getRawValueExact()");
+        }
         return rawValue;
     }
 
+    /**
+     * Retrieve the raw value that was input by the user in their currencies lowest denomination (e.g. pennies),
+     * without any limit on its size. See getRawValue().
+     */
+    public BigInteger getRawValueExact(){
+        if(exactDigits == null){
+            return BigInteger.valueOf(rawValue);
+        }
+        BigInteger value = new BigInteger(exactDigits);
+        return exactNegative ? value.negate() : value;
+    }
+
+    /**
+     * Sets the value to be formatted and displayed in the CurrencyEditText view. Values which do not fit in
+     * a long require exact mode.
+     *
+     * @param value - The value to be converted, represented in the target currencies lowest denomination (e.g. pennies).
+     * @throws IllegalArgumentException If value does not fit in a long and exact mode is not enabled.
+     */
+    public void setValueExact(BigInteger value){
+        if(value.bitLength() < 64){
+            setValue(value.longValue());
+            return;
+        }
+        if(!exactMode){
+            throw new IllegalArgumentException("Values which do not fit in a long require exact mode");
+        }
+        boolean isNegative = value.signum() < 0 && allowNegativeValues;
+        String digits = value.abs().toString();
+        textWatcher.displayWideValue(isNegative, digits, CurrencyTextFormatter.formatDigits(getFormatSpec(), isNegative, digits));
+    }
+
+    /**
+     * Enables or disables exact mode. In exact mode the user may enter values of any size, beyond the range of a
+     * long, and every digit is kept while formatting, even for locales which are otherwise formatted through
+     * a double. Retrieve such values with getRawValueExact().
+     *
+     * If exact mode is disabled while the view holds a value too large for a long, the value is reset to 0.
+     */
+    public void setExactMode(boolean exactMode){
+        if(this.exactMode == exactMode){
+            return;
+        }
+        this.exactMode = exactMode;
+        if(!exactMode && exactDigits != null){
+            setRawValue(0L);
+        }
+        refreshView();
+    }
+
+    public boolean isExactMode(){
+        return exactMode;
+    }
+
     /**
      * Sets the value to be formatted and displayed in the CurrencyEditText view.
      *
@@ -73,7 +355,12 @@ public class CurrencyEditText extends EditText {
      */
     public void setValue(long value){
         String formattedText = format(value);
-        setText(formattedText);
+        if(canDisplayDirectly(value)){
+            textWatcher.displayValue(value, formattedText);
+        }
+        else{
+            setFormattedText(formattedText);
+        }
     }
 
     /**
@@ -100,6 +387,7 @@ public class CurrencyEditText extends EditText {
      */
     public void setLocale(Locale locale){
         currentLocale = locale;
+        config = null;
         refreshView();
     }
 
@@ -138,6 +426,7 @@ public class CurrencyEditText extends EditText {
             throw new IllegalArgumentException("Decimal Digit value must be between 0 and 340");
         }
         decimalDigits = digits;
+        config = null;
 
         refreshView();
     }
@@ -158,6 +447,7 @@ public class CurrencyEditText extends EditText {
         this.currentLocale = locale;
         Currency currentCurrency = getCurrencyForLocale(locale);
         decimalDigits = currentCurrency.getDefaultFractionDigits();
+        config = null;
         refreshView();
     }
 
@@ -171,6 +461,7 @@ public class CurrencyEditText extends EditText {
      */
     public void setDefaultLocale(Locale locale){
         this.defaultLocale = locale;
+        config = null;
     }
 
     /**
@@ -181,6 +472,17 @@ public class CurrencyEditText extends EditText {
         return defaultLocale;
     }
 
+    /**
+     * Starts a batch of configuration changes, which take effect together when ConfigEditor.apply() is called.
+     * Unlike calling setLocale(), setDecimalDigits() and friends one after another, the view's text and hint
+     * are only updated once for the whole batch. For example:
+     *
+     * currencyEditText.editConfig().locale(Locale.GERMANY).decimalDigits(3).allowNegativeValues(true).apply();
+     */
+    public ConfigEditor editConfig(){
+        return new ConfigEditor();
+    }
+
     /**
      * Pass in a value to have it formatted using the same rules used during data entry.
      * @param val A string which represents the value you'd like formatted. It is expected that this string will be in the same format returned by the getRawValue() method (i.e. a series of digits, such as
@@ -192,6 +494,14 @@ public class CurrencyEditText extends EditText {
         return format(val);
     }
 
+    /**
+     * Formats a value the same way as formatCurrency(String), but reports a value which can't be formatted through the
+     * returned result instead of throwing an exception.
+     */
+    public FormatResult tryFormatCurrency(String val){
+        return getCurrencyFormatter().tryFormat(val);
+    }
+
     /**
      * Pass in a value to have it formatted using the same rules used during data entry.
      * @param rawVal A long which represents the value you'd like formatted. It is expected that this value will be in the same format returned by the getRawValue() method (i.e. a series of digits, such as
@@ -199,20 +509,449 @@ public class CurrencyEditText extends EditText {
      * @return A deviceLocale-formatted string of the passed in value, represented as currentCurrency.
      */
     public String formatCurrency(long rawVal){
-        return format(rawVal);
+        if(exactMode){
+            return format(rawVal);
+        }
+        //the only view method that consults the cache of formatted values, see CurrencyTextFormatter.setValueCacheSize()
+        return CurrencyTextFormatter.formatValueCached(getFormatSpec(), rawVal);
+    }
+
+    /**
+     * Pass in a value of any size to have it formatted using the same rules used during data entry. Every digit
+     * is kept, whether or not exact mode is enabled.
+     * @param rawVal A value in the same format returned by getRawValueExact().
+     * @return A deviceLocale-formatted string of the passed in value, represented as currentCurrency.
+     */
+    public String formatCurrency(BigInteger rawVal){
+        return getCurrencyFormatter().format(rawVal);
+    }
+
+    /**
+     * Returns an immutable formatter configured identically to this view (locale, default locale and decimal digits).
+     * The formatter may be used from any thread, e.g. to format values for a list in the background. Note that it
+     * does not follow later configuration changes of this view; call this method again after making them.
+     */
+    public CurrencyFormatter getCurrencyFormatter(){
+        return getConfig().getFormatter();
+    }
+
+    /**
+     * Formats an array of values using the same rules used during data entry. The locale and formatting rules
+     * are only resolved once for the whole array, making this considerably faster than calling
+     * formatCurrency(long) for each value.
+     * @param rawVals The values to format, each in the same format returned by getRawValue().
+     * @return The formatted values, in the same order as rawVals.
+     */
+    public String[] formatCurrency(long[] rawVals){
+        return getCurrencyFormatter().formatAll(rawVals, null);
+    }
+
+    /**
+     * Shows the value of this view converted into another currency in target, which is updated whenever the value
+     * changes. Every mirror is updated from the same raw value, with a formatter resolved when the mirror was added,
+     * so each mirror only adds a conversion and a format to every keystroke. Adding a mirror for a target which
+     * already has one replaces it.
+     */
+    public void addMirror(TextView target, CurrencyMirror mirror){
+        if(target == null || mirror == null){
+            throw new IllegalArgumentException("Mirror target and mirror must not be null");
+        }
+        int index = mirrorTargets.indexOf(target);
+        if(index < 0){
+            mirrorTargets.add(target);
+            mirrors.add(mirror);
+            index = mirrors.size() - 1;
+        }
+        else{
+            mirrors.set(index, mirror);
+        }
+        updateMirror(index, exactDigits != null ? getRawValueExact() : null);
+    }
+
+    /**
+     * Shows the value of this view converted into the currency of locale in target. See addMirror(TextView, CurrencyMirror).
+     * @param rate The exchange rate, in units of the currency of locale per unit of this view's currency, times 10^rateScale.
+     *             For example, a rate of 9213 with a scale of 4 converts $1.00 into 0.92 EUR.
+     * @param rateScale The number of decimal places in rate.
+     */
+    public void addMirror(TextView target, Locale locale, long rate, int rateScale){
+        addMirror(target, new CurrencyMirror(new CurrencyFormatter(locale), rate, rateScale));
+    }
+
+    /**
+     * Changes the exchange rate of the mirror shown in target, and updates it.
+     * @throws IllegalArgumentException If target is not showing a mirror of this view.
+     */
+    public void setMirrorRate(TextView target, long rate, int rateScale){
+        int index = mirrorTargets.indexOf(target);
+        if(index < 0){
+            throw new IllegalArgumentException("Not a mirror target of this view");
+        }
+        mirrors.set(index, mirrors.get(index).withRate(rate, rateScale));
+        updateMirror(index, exactDigits != null ? getRawValueExact() : null);
+    }
+
+    /**
+     * Stops updating target. Its text is left as it is.
+     */
+    public void removeMirror(TextView target){
+        int index = mirrorTargets.indexOf(target);
+        if(index >= 0){
+            mirrorTargets.remove(index);
+            mirrors.remove(index);
+        }
+    }
+
+    public void clearMirrors(){
+        mirrorTargets.clear();
+        mirrors.clear();
     }
 
     /*
     PRIVATE HELPER METHODS
      */
 
+    private CurrencyConfig getConfig(){
+        CurrencyConfig result = config;
+        if(result == null){
+            result = CurrencyConfig.obtain(currentLocale, defaultLocale, decimalDigits);
+            config = result;
+        }
+        return result;
+    }
+
+    /**
+     * The formatting rules for this view's current locale and decimal digit configuration.
+     */
+    CurrencyFormatSpec getFormatSpec(){
+        return getCurrencyFormatter().getSpec();
+    }
+
+    /**
+     * The most significant digits the input filter accepts, taking the range of a long into account.
+     */
+    int getDigitLimit(){
+        int limit = maxDigits > 0 ? maxDigits : Integer.MAX_VALUE;
+        return exactMode ? limit : Math.min(limit, CurrencyInputRules.MAX_LONG_SAFE_DIGITS);
+    }
+
+    /**
+     * Whether the view or its text watcher is writing text, which the input filter should let through.
+     */
+    boolean isWritingText(){
+        return writingText || textWatcher.isApplyingText();
+    }
+
+    @Override
+    public Parcelable onSaveInstanceState(){
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        state.rawValue = rawValue;
+        state.exactDigits = exactDigits;
+        state.exactNegative = exactNegative;
+        state.locale = currentLocale;
+        state.defaultLocale = defaultLocale;
+        state.decimalDigits = decimalDigits;
+        state.allowNegativeValues = allowNegativeValues;
+        state.exactMode = exactMode;
+        state.maxDigits = maxDigits;
+        //an empty field, or one holding nothing but a minus sign, does not show its raw value
+        CharSequence text = getText();
+        state.textShowsValue = text.length() > 0 && !(text.length() == 1 && getFormatSpec().isMinusSign(text.charAt(0)));
+        return state;
+    }
+
+    @Override
+    public void onRestoreInstanceState(Parcelable state){
+        if(!(state instanceof SavedState)){
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        SavedState saved = (SavedState) state;
+        currentLocale = saved.locale;
+        defaultLocale = saved.defaultLocale;
+        decimalDigits = saved.decimalDigits;
+        allowNegativeValues = saved.allowNegativeValues;
+        exactMode = saved.exactMode;
+        maxDigits = saved.maxDigits;
+        config = null;
+
+        if(!saved.textShowsValue){
+            //let the text watcher handle the restored text, as it would any other
+            super.onRestoreInstanceState(saved.getSuperState());
+            updateHint();
+            return;
+        }
+
+        //the restored text is the formatted value, which is displayed again below without parsing it back
+        textWatcher.setIgnoringEdits(true);
+        try{
+            super.onRestoreInstanceState(saved.getSuperState());
+        }
+        finally{
+            textWatcher.setIgnoringEdits(false);
+        }
+        if(saved.exactDigits != null){
+            setRawValueExact(saved.exactNegative, saved.exactDigits);
+        }
+        else{
+            setRawValue(saved.rawValue);
+        }
+        refreshView();
+    }
+
+    @Override
+    protected void onAttachedToWindow(){
+        super.onAttachedToWindow();
+        attached = true;
+        SystemLocaleMonitor.viewAttached(this);
+        if(localeGeneration != SystemLocaleMonitor.getGeneration()){
+            //the system locale changed while the view was detached
+            onSystemLocaleChanged();
+        }
+        else if(textRefreshPending){
+            refreshText();
+        }
+        //the layout params, and with them the layout width, are usually only set once the view has been inflated
+        updateTextMetrics();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh){
+        super.onSizeChanged(w, h, oldw, oldh);
+        if(w != oldw && autoShrink){
+            //changing the text size or layout width now would request a second layout pass straight away
+            removeCallbacks(textMetricsUpdate);
+            post(textMetricsUpdate);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow(){
+        super.onDetachedFromWindow();
+        attached = false;
+        SystemLocaleMonitor.viewDetached(this);
+    }
+
+    /**
+     * Called when the system locale changes, once the shared configurations have been discarded. The view keeps
+     * its own locale, and with it the currency of its value, but its text and hint are formatted again.
+     */
+    void onSystemLocaleChanged(){
+        localeGeneration = SystemLocaleMonitor.getGeneration();
+        config = null;
+        refreshView();
+    }
+
+    /**
+     * Called by the text watcher when the text is edited, which formats it with the current configuration and
+     * so makes a pending refresh of the text unnecessary.
+     */
+    void cancelPendingTextRefresh(){
+        textRefreshPending = false;
+    }
+
+    /**
+     * Shrinks the text to fit and sets the width class of the text, as enabled. Called whenever the displayed text,
+     * or anything its width depends on, changes.
+     */
+    void updateTextMetrics(){
+        //called by the TextView constructor, before the view is initialized
+        if(textWatcher == null){
+            return;
+        }
+        if(!stableLayout && !autoShrink && stableWidth == NO_STABLE_WIDTH){
+            return;
+        }
+        if(autoShrink){
+            shrinkText();
+        }
+        updateStableWidth();
+    }
+
+    private void shrinkText(){
+        GlyphWidths widths = getGlyphWidths();
+        float available = getAvailableTextWidth();
+        if(widths == null || available <= 0){
+            return;
+        }
+        if(unshrunkTextSize == 0){
+            unshrunkTextSize = getTextSize();
+        }
+        //character widths scale with the text size, so the text fits at the size that scales its width to available
+        float width = widths.measure(getText(), getPaint()) * unshrunkTextSize;
+        float size = unshrunkTextSize;
+        if(width > available){
+            float minSize = shrinkMinTextSize > 0 ? Math.min(shrinkMinTextSize, unshrunkTextSize) : unshrunkTextSize / 2;
+            size = Math.max((float) Math.floor(unshrunkTextSize * available / width), minSize);
+        }
+        applyTextSize(size);
+    }
+
+    private void applyTextSize(float size){
+        if(size == getTextSize()){
+            return;
+        }
+        shrinkingText = true;
+        try{
+            super.setTextSize(TypedValue.COMPLEX_UNIT_PX, size);
+        }
+        finally{
+            shrinkingText = false;
+        }
+    }
+
+    private void updateStableWidth(){
+        ViewGroup.LayoutParams params = getLayoutParams();
+        if(params == null || !wrapsContent(params)){
+            //the application has given the view a width of its own
+            stableWidth = NO_STABLE_WIDTH;
+            return;
+        }
+        int width = stableLayout ? getStableWidth() : ViewGroup.LayoutParams.WRAP_CONTENT;
+        stableWidth = width == ViewGroup.LayoutParams.WRAP_CONTENT ? NO_STABLE_WIDTH : width;
+        if(params.width != width){
+            params.width = width;
+            setLayoutParams(params);
+        }
+    }
+
+    /**
+     * The width of the width class of the current text (or of the hint, while there is no text), or WRAP_CONTENT
+     * if it can't be predicted.
+     */
+    private int getStableWidth(){
+        GlyphWidths widths = getGlyphWidths();
+        if(widths == null){
+            return ViewGroup.LayoutParams.WRAP_CONTENT;
+        }
+        TextPaint paint = getPaint();
+        float classWidth = widths.getWidestDigit() * paint.getTextSize() * WIDTH_CLASS_DIGITS;
+        if(classWidth <= 0){
+            return ViewGroup.LayoutParams.WRAP_CONTENT;
+        }
+
+        CharSequence text = getText();
+        float textWidth;
+        if(text.length() > 0){
+            textWidth = widths.measure(text, paint) * paint.getTextSize();
+        }
+        else{
+            CharSequence hint = getHint();
+            textWidth = hint != null ? paint.measureText(hint, 0, hint.length()) : 0;
+        }
+
+        //rounded up to a whole number of classes, which always leaves some room for the cursor
+        int classes = (int) (textWidth / classWidth) + 1;
+        int width = (int) Math.ceil(classes * classWidth) + getCompoundPaddingLeft() + getCompoundPaddingRight();
+        width = Math.max(width, getSuggestedMinimumWidth());
+        int limit = getParentContentWidth();
+        return limit > 0 ? Math.min(width, limit) : width;
+    }
+
+    /**
+     * The width the text may take up: that of the view as laid out, or of its parent while the layout width is
+     * wrap_content, less padding. 0 until laid out.
+     */
+    private float getAvailableTextWidth(){
+        ViewGroup.LayoutParams params = getLayoutParams();
+        int width = params != null && wrapsContent(params) ? getParentContentWidth() : getWidth();
+        if(width <= 0){
+            return 0;
+        }
+        return width - getCompoundPaddingLeft() - getCompoundPaddingRight();
+    }
+
+    /**
+     * The width of the parent, less its padding and the view's margins, or 0 if it hasn't been laid out.
+     */
+    private int getParentContentWidth(){
+        if(!(getParent() instanceof View)){
+            return 0;
+        }
+        View parent = (View) getParent();
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        ViewGroup.LayoutParams params = getLayoutParams();
+        if(params instanceof ViewGroup.MarginLayoutParams){
+            ViewGroup.MarginLayoutParams margins = (ViewGroup.MarginLayoutParams) params;
+            width -= margins.leftMargin + margins.rightMargin;
+        }
+        return parent.getWidth() > 0 ? Math.max(width, 0) : 0;
+    }
+
+    /**
+     * Whether the layout width is wrap_content, or the width class the view replaced wrap_content with.
+     */
+    private boolean wrapsContent(ViewGroup.LayoutParams params){
+        return params.width == ViewGroup.LayoutParams.WRAP_CONTENT || (stableWidth != NO_STABLE_WIDTH && params.width == stableWidth);
+    }
+
+    /**
+     * The widths of the characters of the current spec, measured again whenever the spec or the typeface changes,
+     * or null if the text size is not positive.
+     */
+    private GlyphWidths getGlyphWidths(){
+        TextPaint paint = getPaint();
+        if(paint.getTextSize() <= 0){
+            return null;
+        }
+        CurrencyFormatSpec spec = getFormatSpec();
+        GlyphWidths widths = glyphWidths;
+        if(widths == null || !widths.matches(spec, paint)){
+            widths = new GlyphWidths(spec, paint);
+            glyphWidths = widths;
+        }
+        return widths;
+    }
+
     private void refreshView(){
-        setText(format(getRawValue()));
+        if(attached){
+            refreshText();
+        }
+        else{
+            textRefreshPending = true;
+        }
         updateHint();
     }
 
+    private void refreshText(){
+        textRefreshPending = false;
+        if(exactDigits != null){
+            textWatcher.displayWideValue(exactNegative, exactDigits, CurrencyTextFormatter.formatDigits(getFormatSpec(), exactNegative, exactDigits));
+            return;
+        }
+        long value = getRawValue();
+        String formattedText = format(value);
+        if(canDisplayDirectly(value)){
+            textWatcher.displayValue(value, formattedText);
+        }
+        else{
+            setFormattedText(formattedText);
+        }
+    }
+
+    /**
+     * Whether value can be displayed as formatted, without being parsed back by the text watcher. Not the case if
+     * the value is negative but negative values are not allowed, or if it may lose precision while being formatted.
+     */
+    private boolean canDisplayDirectly(long value){
+        return (value >= 0 || allowNegativeValues) && (exactMode || getFormatSpec().isExact());
+    }
+
+    private void setFormattedText(String text){
+        writingText = true;
+        try{
+            setText(text);
+        }
+        finally{
+            writingText = false;
+        }
+    }
+
     private String format(long val){
-        return CurrencyTextFormatter.formatText(String.valueOf(val), currentLocale, defaultLocale, decimalDigits);
+        if(exactMode){
+            return CurrencyTextFormatter.formatValueExact(getFormatSpec(), val, val < 0);
+        }
+        return CurrencyTextFormatter.formatValue(getFormatSpec(), val);
     }
 
     private String format(String val){
@@ -226,6 +965,9 @@ public class CurrencyEditText extends EditText {
         Currency currentCurrency = getCurrencyForLocale(currentLocale);
         decimalDigits = currentCurrency.getDefaultFractionDigits();
         initCurrencyTextWatcher();
+
+        inputFilter = new CurrencyInputFilter(this);
+        setFilters(getFilters());
     }
 
     private void initCurrencyTextWatcher(){
@@ -239,35 +981,52 @@ public class CurrencyEditText extends EditText {
     private void processAttributes(Context context, AttributeSet attrs){
         TypedArray array = context.obtainStyledAttributes(attrs, R.styleable.CurrencyEditText);
         this.hintCache = getHintString();
-        updateHint();
 
-        this.setAllowNegativeValues(array.getBoolean(R.styleable.CurrencyEditText_allow_negative_values, false));
-        this.setDecimalDigits(array.getInteger(R.styleable.CurrencyEditText_decimal_digits, decimalDigits));
+        //Read into the fields, then refresh the view once, as ConfigEditor.apply() does. Going through the setters
+        //would refresh it (and set the hint) for each attribute which changes the formatting.
+        boolean allowNegativeValues = array.getBoolean(R.styleable.CurrencyEditText_allow_negative_values, false);
+        int digits = array.getInteger(R.styleable.CurrencyEditText_decimal_digits, decimalDigits);
+        boolean exactMode = array.getBoolean(R.styleable.CurrencyEditText_exact_mode, false);
+        int maxDigits = array.getInteger(R.styleable.CurrencyEditText_max_digits, 0);
+        float shrinkMinTextSize = array.getDimension(R.styleable.CurrencyEditText_shrink_min_text_size, 0);
+        boolean autoShrink = array.getBoolean(R.styleable.CurrencyEditText_auto_shrink, false);
+        boolean stableLayout = array.getBoolean(R.styleable.CurrencyEditText_stable_layout, false);
 
         array.recycle();
+
+        if(digits < 0 || digits > 340){
+            throw new IllegalArgumentException("Decimal Digit value must be between 0 and 340");
+        }
+        if(maxDigits < 0){
+            throw new IllegalArgumentException("maxDigits must not be negative");
+        }
+        if(shrinkMinTextSize < 0){
+            throw new IllegalArgumentException("minTextSize must not be negative");
+        }
+
+        this.allowNegativeValues = allowNegativeValues;
+        this.decimalDigits = digits;
+        this.exactMode = exactMode;
+        this.maxDigits = maxDigits;
+        this.shrinkMinTextSize = shrinkMinTextSize;
+        this.autoShrink = autoShrink;
+        this.stableLayout = stableLayout;
+        config = null;
+
+        //the text size and layout width are only set up once the view is attached
+        refreshView();
     }
 
     private void updateHint() {
         if(hintCache == null){
             setHint(getDefaultHintValue());
+            updateTextMetrics();
         }
     }
 
     private String getDefaultHintValue() {
-        try {
-            return Currency.getInstance(currentLocale).getSymbol();
-        }
-        catch(Exception e){
-            Log.w("CurrencyEditText", String.format("An error occurred while getting currency symbol for hint using locale '%s', falling back to defaultLocale", currentLocale));
-            try{
-                return Currency.getInstance(defaultLocale).getSymbol();
-            }
-            catch(Exception e1){
-                Log.w("CurrencyEditText", String.format("An error occurred while getting currency symbol for hint using default locale '%s', falling back to USD", defaultLocale));
-                return Currency.getInstance(Locale.US).getSymbol();
-            }
-
-        }
+        //falls back to defaultLocale, then USD, without throwing; shared with every view configured the same way
+        return getConfig().getSymbol();
     }
 
     private Locale retrieveLocale(){
@@ -277,30 +1036,235 @@ public class CurrencyEditText extends EditText {
         }
         catch(Exception e){
             Log.w("CurrencyEditText", String.format("An error occurred while retrieving users device locale, using fallback locale '%s'", defaultLocale), e);
+            CurrencyTextFormatter.reportLocaleFallback(null, defaultLocale);
             locale = defaultLocale;
         }
         return locale;
     }
 
     private Currency getCurrencyForLocale(Locale locale){
-        Currency currency;
-        try {
-            currency = Currency.getInstance(locale);
+        return CurrencyResolver.resolve(locale, defaultLocale);
+    }
+
+    protected void setRawValue(long value) {
+        rawValue = value;
+        exactDigits = null;
+        updateMirrors();
+        if(rawValueDispatcher != null){
+            rawValueDispatcher.onRawValueChanged(value);
         }
-        catch(Exception e){
-            try{
-                Log.w("CurrencyEditText", String.format("Error occurred while retrieving currency information for locale '%s'. Trying default locale '%s'...", currentLocale, defaultLocale));
-                currency = Currency.getInstance(defaultLocale);
+    }
+
+    /**
+     * Records a value too large for a long, given as its sign and the ASCII digits of its magnitude.
+     */
+    void setRawValueExact(boolean isNegative, String digits){
+        exactNegative = isNegative;
+        exactDigits = digits;
+        updateMirrors();
+    }
+
+    private void updateMirrors(){
+        if(mirrors.isEmpty()){
+            return;
+        }
+        //a value too large for a long is only converted into a BigInteger once, for all of the mirrors
+        BigInteger wideValue = exactDigits != null ? getRawValueExact() : null;
+        for(int i = 0; i < mirrors.size(); i++){
+            updateMirror(i, wideValue);
+        }
+    }
+
+    private void updateMirror(int index, BigInteger wideValue){
+        CurrencyMirror mirror = mirrors.get(index);
+        String text = wideValue != null ? mirror.format(wideValue, decimalDigits) : mirror.format(rawValue, decimalDigits);
+        mirrorTargets.get(index).setText(text);
+    }
+
+    /**
+     * Collects changes to the configuration of a CurrencyEditText, obtained from editConfig(). Nothing changes
+     * until apply() is called.
+     */
+    public final class ConfigEditor {
+
+        private Locale locale;
+        private boolean localeSet;
+        private boolean useLocaleCurrency;
+        private Locale defaultLocale;
+        private Integer decimalDigits;
+        private Boolean allowNegativeValues;
+        private Boolean exactMode;
+
+        private ConfigEditor(){}
+
+        /**
+         * See setLocale(). The decimal digits are left as they are.
+         */
+        public ConfigEditor locale(Locale locale){
+            this.locale = locale;
+            this.localeSet = true;
+            this.useLocaleCurrency = false;
+            return this;
+        }
+
+        /**
+         * See configureViewForLocale(). The decimal digits are taken from the currency of locale, unless
+         * decimalDigits() is also called.
+         */
+        public ConfigEditor configureForLocale(Locale locale){
+            this.locale = locale;
+            this.localeSet = true;
+            this.useLocaleCurrency = true;
+            return this;
+        }
+
+        /**
+         * See setDefaultLocale().
+         */
+        public ConfigEditor defaultLocale(Locale defaultLocale){
+            this.defaultLocale = defaultLocale;
+            return this;
+        }
+
+        /**
+         * See setDecimalDigits(). Takes precedence over the digits of the currency chosen by configureForLocale(),
+         * regardless of the order in which the two are called. Validated by apply().
+         */
+        public ConfigEditor decimalDigits(int digits){
+            this.decimalDigits = digits;
+            return this;
+        }
+
+        /**
+         * See setAllowNegativeValues().
+         */
+        public ConfigEditor allowNegativeValues(boolean allowNegativeValues){
+            this.allowNegativeValues = allowNegativeValues;
+            return this;
+        }
+
+        /**
+         * See setExactMode().
+         */
+        public ConfigEditor exactMode(boolean exactMode){
+            this.exactMode = exactMode;
+            return this;
+        }
+
+        /**
+         * Validates the changes, then applies all of them and updates the view once. If any change is invalid,
+         * none are applied.
+         * @throws IllegalArgumentException If the decimal digits do not fall within the range (0, 340) inclusive.
+         */
+        public void apply(){
+            if(decimalDigits != null && (decimalDigits < 0 || decimalDigits > 340)){
+                throw new IllegalArgumentException("Decimal Digit value must be between 0 and 340");
+            }
+
+            if(defaultLocale != null){
+                CurrencyEditText.this.defaultLocale = defaultLocale;
+            }
+            if(localeSet){
+                currentLocale = locale;
             }
-            catch(Exception e1){
-                Log.e("CurrencyEditText", "Both device and configured default locales failed to report currentCurrency data. Defaulting to USD.");
-                currency = Currency.getInstance(Locale.US);
+            if(decimalDigits != null){
+                CurrencyEditText.this.decimalDigits = decimalDigits;
             }
+            else if(useLocaleCurrency){
+                CurrencyEditText.this.decimalDigits = getCurrencyForLocale(locale).getDefaultFractionDigits();
+            }
+            if(allowNegativeValues != null){
+                CurrencyEditText.this.allowNegativeValues = allowNegativeValues;
+            }
+            if(exactMode != null){
+                CurrencyEditText.this.exactMode = exactMode;
+                if(!exactMode && exactDigits != null){
+                    setRawValue(0L);
+                }
+            }
+            config = null;
+
+            refreshView();
         }
-        return currency;
     }
 
-    protected void setRawValue(long value) {
-        rawValue = value;
+    /**
+     * The raw value and configuration of a CurrencyEditText, saved alongside the state of the TextView so that
+     * the value can be displayed again after a configuration change without parsing the restored text.
+     */
+    static class SavedState extends BaseSavedState {
+
+        long rawValue;
+        String exactDigits;
+        boolean exactNegative;
+        Locale locale;
+        Locale defaultLocale;
+        int decimalDigits;
+        boolean allowNegativeValues;
+        boolean exactMode;
+        int maxDigits;
+        boolean textShowsValue;
+
+        SavedState(Parcelable superState){
+            super(superState);
+        }
+
+        private SavedState(Parcel source){
+            super(source);
+            rawValue = source.readLong();
+            exactDigits = source.readString();
+            locale = readLocale(source);
+            defaultLocale = readLocale(source);
+            decimalDigits = source.readInt();
+            maxDigits = source.readInt();
+            int flags = source.readInt();
+            exactNegative = (flags & 1) != 0;
+            allowNegativeValues = (flags & 2) != 0;
+            exactMode = (flags & 4) != 0;
+            textShowsValue = (flags & 8) != 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags){
+            super.writeToParcel(dest, flags);
+            dest.writeLong(rawValue);
+            dest.writeString(exactDigits);
+            writeLocale(dest, locale);
+            writeLocale(dest, defaultLocale);
+            dest.writeInt(decimalDigits);
+            dest.writeInt(maxDigits);
+            dest.writeInt((exactNegative ? 1 : 0) | (allowNegativeValues ? 2 : 0) | (exactMode ? 4 : 0) | (textShowsValue ? 8 : 0));
+        }
+
+        //locales may be null, as setLocale() and setDefaultLocale() accept null, so each is preceded by a presence flag
+        private static void writeLocale(Parcel dest, Locale locale){
+            if(locale == null){
+                dest.writeInt(0);
+                return;
+            }
+            dest.writeInt(1);
+            dest.writeString(locale.getLanguage());
+            dest.writeString(locale.getCountry());
+            dest.writeString(locale.getVariant());
+        }
+
+        private static Locale readLocale(Parcel source){
+            if(source.readInt() == 0){
+                return null;
+            }
+            return new Locale(source.readString(), source.readString(), source.readString());
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel source){
+                return new SavedState(source);
+            }
+
+            @Override
+            public SavedState[] newArray(int size){
+                return new SavedState[size];
+            }
+        };
     }
 }
@@ -0,0 +1,28 @@
+package com.blackcat.currencyedittext;
+
+import android.text.InputFilter;
+import android.text.Spanned;
+
+/**
+ * Keeps characters which can't be part of a value out of a CurrencyEditText before they reach its text: characters
+ * its locale does not use, minus signs when negative values are not allowed, and digits beyond its maximum.
+ * A large paste is therefore filtered in a single pass, instead of being inserted and then rolled back by the
+ * text watcher. Text written by the view itself is let through untouched.
+ */
+final class CurrencyInputFilter implements InputFilter {
+
+    private final CurrencyEditText editText;
+
+    CurrencyInputFilter(CurrencyEditText editText){
+        this.editText = editText;
+    }
+
+    @Override
+    public CharSequence filter(CharSequence source, int start, int end, Spanned dest, int dstart, int dend){
+        if(start == end || editText.isWritingText()){
+            return null;
+        }
+        return CurrencyInputRules.filter(source, start, end, dest, dstart, dend,
+                editText.getFormatSpec(), editText.areNegativeValuesAllowed(), editText.getDigitLimit());
+    }
+}
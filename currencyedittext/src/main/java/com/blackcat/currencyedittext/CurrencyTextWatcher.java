@@ -3,12 +3,12 @@ package com.blackcat.currencyedittext;
 import android.text.Editable;
 import android.text.TextWatcher;
 
-class CurrencyTextWatcher implements TextWatcher {
+class CurrencyTextWatcher implements TextWatcher, CurrencyFieldEditor.Field {
 
     private CurrencyEditText editText;
 
-    private boolean ignoreIteration;
-    private String lastGoodInput;
+    //processes each edit; shared with the benchmarks and tests, which drive it without Android
+    private final CurrencyFieldEditor editor = new CurrencyFieldEditor(this);
 
     /**
      * A specialized TextWatcher designed specifically for converting EditText values to a pretty-print string currency value.
@@ -17,8 +17,6 @@ class CurrencyTextWatcher implements TextWatcher {
      */
     CurrencyTextWatcher(CurrencyEditText textBox){
         editText = textBox;
-        lastGoodInput = "";
-        ignoreIteration = false;
     }
 
     /**
@@ -28,69 +26,112 @@ class CurrencyTextWatcher implements TextWatcher {
      */
     @Override
     public void afterTextChanged(Editable editable) {
-        //Use the ignoreIteration flag to stop our edits to the text field from triggering an endlessly recursive call to afterTextChanged
-        if(!ignoreIteration){
-            ignoreIteration = true;
-            //Start by converting the editable to something easier to work with, then remove all non-digit characters
-            String newText = editable.toString();
-            String textToDisplay;
-
-
-            if (newText.length() < 1){
-                lastGoodInput = "";
-                editText.setRawValue(0);
-                editText.setText("");
-                return;
-            }
-
-            newText = (editText.areNegativeValuesAllowed()) ? newText.replaceAll("[^0-9/-]", "") : newText.replaceAll("[^0-9]", "");
-            if(!newText.equals("") && !newText.equals("-")){
-                //Store a copy of the raw input to be retrieved later by getRawValue
-                editText.setRawValue(Long.valueOf(newText));
-            }
-            try{
-                textToDisplay = CurrencyTextFormatter.formatText(newText, editText.getLocale(), editText.getDefaultLocale(), editText.getDecimalDigits());
-            }
-            catch(IllegalArgumentException exception){
-                textToDisplay = lastGoodInput;
-            }
-
-            editText.setText(textToDisplay);
-            //Store the last known good input so if there are any issues with new input later, we can fall back gracefully.
-            lastGoodInput = textToDisplay;
-
-            //locate the position to move the cursor to, which will always be the last digit.
-            String currentText = editText.getText().toString();
-            int cursorPosition = indexOfLastDigit(currentText) + 1;
-
-
-            //Move the cursor to the end of the numerical value to enter the next number in a right-to-left fashion, like you would on a calculator.
-            if (currentText.length() >= cursorPosition){
-                editText.setSelection(cursorPosition);
-            }
+        //our own edits to the text field are not processed again
+        if(editor.isIgnoringEdits()){
+            return;
+        }
 
+        //the edit supersedes any text the view was waiting to display
+        editText.cancelPendingTextRefresh();
+        boolean traced = TraceSections.begin("CurrencyEditText#afterTextChanged");
+        try{
+            editor.afterTextChanged();
         }
-        else{
-            ignoreIteration = false;
+        finally{
+            TraceSections.end(traced);
         }
+    }
+
+    /**
+     * Ignores edits until called again with false, e.g. while the framework restores text which the view is about
+     * to replace with its own.
+     */
+    void setIgnoringEdits(boolean ignoring){
+        editor.setIgnoringEdits(ignoring);
+    }
 
+    /**
+     * Whether the watcher is replacing the text with formatted text, which it has already validated.
+     */
+    boolean isApplyingText(){
+        return editor.isIgnoringEdits();
     }
 
-    //Thanks to Lucas Eduardo for this contribution to update the cursor placement code.
-    private int indexOfLastDigit(String str){
-        int result = 0;
+    /**
+     * Displays text which the view has already formatted from value, without parsing and formatting it again
+     * as afterTextChanged() would. text must have been formatted by the view's current format spec.
+     */
+    void displayValue(long value, String text){
+        editor.displayValue(value, text);
+    }
 
-        for(int i = 0; i < str.length(); i++){
-            if(Character.isDigit(str.charAt(i))){
-                result = i;
-            }
-        }
+    /**
+     * Displays text which the view has already formatted from a value too large for a long, given as its sign
+     * and the ASCII digits of its magnitude.
+     */
+    void displayWideValue(boolean isNegative, String digits, String text){
+        editor.displayWideValue(isNegative, digits, text);
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence charSequence, int start, int count, int after) {
+        editor.beforeTextChanged(charSequence, start, count, after);
+    }
 
-        return result;
+    @Override
+    public void onTextChanged(CharSequence charSequence, int start, int before, int count) {
+        editor.onTextChanged(charSequence, start, before, count);
     }
 
+    /*
+    CurrencyFieldEditor.Field, backed by the view
+     */
+
     @Override
-    public void beforeTextChanged(CharSequence charSequence, int start, int count, int after) {}
+    public CurrencyFormatSpec getFormatSpec(){
+        return editText.getFormatSpec();
+    }
+
     @Override
-    public void onTextChanged(CharSequence charSequence, int start, int before, int count) {}
+    public boolean areNegativeValuesAllowed(){
+        return editText.areNegativeValuesAllowed();
+    }
+
+    @Override
+    public boolean isExactMode(){
+        return editText.isExactMode();
+    }
+
+    @Override
+    public void setRawValue(long value){
+        editText.setRawValue(value);
+    }
+
+    @Override
+    public void setRawValueExact(boolean isNegative, String digits){
+        editText.setRawValueExact(isNegative, digits);
+    }
+
+    @Override
+    public CharSequence getText(){
+        return editText.getText();
+    }
+
+    /**
+     * Replaces the changed range only, which leaves spans and IME state outside the edit alone.
+     */
+    @Override
+    public void replaceText(int start, int end, CharSequence replacement, int replacementStart, int replacementEnd){
+        editText.getText().replace(start, end, replacement, replacementStart, replacementEnd);
+    }
+
+    @Override
+    public void setCursor(int position){
+        editText.setSelection(position);
+    }
+
+    @Override
+    public void onTextDisplayed(){
+        editText.updateTextMetrics();
+    }
 }
@@ -0,0 +1,83 @@
+package com.blackcat.currencyedittext;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * The widths of every character a CurrencyFormatSpec may write, measured once for a typeface, so that the width of
+ * formatted text can be predicted by adding them up rather than by measuring the text. Widths are kept per pixel of
+ * text size, which they scale with, so they stay valid while CurrencyEditText shrinks its text.
+ *
+ * Kerning is not taken into account. The digits of most fonts are tabular, so predictions for formatted amounts are
+ * exact or very close, and callers leave some room to spare.
+ */
+final class GlyphWidths {
+
+    private final CurrencyFormatSpec spec;
+    private final Typeface typeface;
+    private final float textScaleX;
+
+    private final char[] glyphs;
+    private final float[] widths;
+    private final float widestDigit;
+
+    /**
+     * Measures the glyphs of spec with paint, which must have a positive text size.
+     */
+    GlyphWidths(CurrencyFormatSpec spec, Paint paint){
+        this.spec = spec;
+        this.typeface = paint.getTypeface();
+        this.textScaleX = paint.getTextScaleX();
+
+        String glyphSet = spec.glyphs();
+        glyphs = glyphSet.toCharArray();
+        widths = new float[glyphs.length];
+
+        //measured one at a time, as each is added up on its own
+        float textSize = paint.getTextSize();
+        float widest = 0;
+        for(int i = 0; i < widths.length; i++){
+            widths[i] = paint.measureText(glyphSet, i, i + 1) / textSize;
+            if(i < 10){
+                widest = Math.max(widest, widths[i]);
+            }
+        }
+        widestDigit = widest;
+    }
+
+    /**
+     * Whether these widths were measured for spec, with the typeface and horizontal scale paint currently has.
+     */
+    boolean matches(CurrencyFormatSpec spec, Paint paint){
+        return this.spec == spec && typeface == paint.getTypeface() && textScaleX == paint.getTextScaleX();
+    }
+
+    /**
+     * Predicts the width of text at a text size of one pixel, without allocating. Characters the spec doesn't
+     * write are measured with paint.
+     */
+    float measure(CharSequence text, Paint paint){
+        float width = 0;
+        for(int i = 0; i < text.length(); i++){
+            width += widthOf(text, i, paint);
+        }
+        return width;
+    }
+
+    /**
+     * The width of the spec's widest digit at a text size of one pixel.
+     */
+    float getWidestDigit(){
+        return widestDigit;
+    }
+
+    private float widthOf(CharSequence text, int index, Paint paint){
+        char c = text.charAt(index);
+        for(int i = 0; i < glyphs.length; i++){
+            if(glyphs[i] == c){
+                return widths[i];
+            }
+        }
+        return paint.measureText(text, index, index + 1) / paint.getTextSize();
+    }
+}
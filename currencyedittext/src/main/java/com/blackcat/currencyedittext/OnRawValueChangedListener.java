@@ -0,0 +1,16 @@
+package com.blackcat.currencyedittext;
+
+/**
+ * Notified when the raw value of a CurrencyEditText changes. See CurrencyEditText.setOnRawValueChangedListener().
+ */
+public interface OnRawValueChangedListener {
+
+    /**
+     * Called once for each change of the raw value, whether made by the user or by the application. Edits which
+     * leave the value as it was (such as typing a grouping separator) and the reformatting of the text which
+     * follows each edit are not reported.
+     * @param oldValue The previously reported raw value.
+     * @param newValue The new raw value. Never equal to oldValue.
+     */
+    void onRawValueChanged(long oldValue, long newValue);
+}
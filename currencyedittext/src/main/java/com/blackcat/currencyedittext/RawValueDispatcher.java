@@ -0,0 +1,75 @@
+package com.blackcat.currencyedittext;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Reports changes of the raw value of a CurrencyEditText to its OnRawValueChangedListener, optionally coalescing
+ * rapid changes and delivering the reports to an executor. Used from the UI thread only.
+ */
+final class RawValueDispatcher implements Runnable {
+
+    private final OnRawValueChangedListener listener;
+    private final long coalesceMillis;
+    private final Executor executor;
+    private final Handler handler;
+
+    //the value most recently reported, which is the old value of the next report
+    private long reportedValue;
+    private long pendingValue;
+
+    RawValueDispatcher(OnRawValueChangedListener listener, long coalesceMillis, Executor executor, long initialValue){
+        this.listener = listener;
+        this.coalesceMillis = coalesceMillis;
+        this.executor = executor;
+        this.handler = coalesceMillis > 0 ? new Handler(Looper.getMainLooper()) : null;
+        this.reportedValue = initialValue;
+        this.pendingValue = initialValue;
+    }
+
+    void onRawValueChanged(long value){
+        if(handler == null){
+            report(value);
+            return;
+        }
+        //each change restarts the wait, so a burst of keystrokes is reported once, when it is over
+        pendingValue = value;
+        handler.removeCallbacks(this);
+        handler.postDelayed(this, coalesceMillis);
+    }
+
+    /**
+     * Discards any change still waiting to be reported.
+     */
+    void cancel(){
+        if(handler != null){
+            handler.removeCallbacks(this);
+        }
+    }
+
+    @Override
+    public void run(){
+        report(pendingValue);
+    }
+
+    private void report(final long newValue){
+        final long oldValue = reportedValue;
+        if(newValue == oldValue){
+            //changes which cancelled each other out while being coalesced
+            return;
+        }
+        reportedValue = newValue;
+        if(executor == null){
+            listener.onRawValueChanged(oldValue, newValue);
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onRawValueChanged(oldValue, newValue);
+            }
+        });
+    }
+}
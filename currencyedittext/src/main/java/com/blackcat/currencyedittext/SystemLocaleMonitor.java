@@ -0,0 +1,68 @@
+package com.blackcat.currencyedittext;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Discards the configurations shared by every CurrencyEditText when the system locale changes (currency symbols
+ * depend on it), and refreshes every attached CurrencyEditText in a single pass. Views which are not attached
+ * at the time refresh themselves when they are attached again. Used from the UI thread only.
+ *
+ * Views are held weakly, so that a view whose window is never detached (e.g. a leaked window) does not keep its
+ * activity alive for the life of the process.
+ */
+final class SystemLocaleMonitor {
+
+    private static final Set<CurrencyEditText> attachedViews = Collections.newSetFromMap(new WeakHashMap<CurrencyEditText, Boolean>());
+
+    private static BroadcastReceiver receiver;
+    //the application context the receiver is registered with
+    private static Context receiverContext;
+
+    //incremented on every change of the system locale
+    private static int generation;
+
+    private SystemLocaleMonitor(){}
+
+    static int getGeneration(){
+        return generation;
+    }
+
+    static void viewAttached(CurrencyEditText view){
+        Context applicationContext = view.getContext().getApplicationContext();
+        //registered once per application, which in tests may be replaced while the process lives on
+        if(receiverContext != applicationContext){
+            if(receiver == null){
+                receiver = new BroadcastReceiver() {
+                    @Override
+                    public void onReceive(Context context, Intent intent) {
+                        onLocaleChanged();
+                    }
+                };
+            }
+            applicationContext.registerReceiver(receiver, new IntentFilter(Intent.ACTION_LOCALE_CHANGED));
+            receiverContext = applicationContext;
+        }
+        attachedViews.add(view);
+    }
+
+    static void viewDetached(CurrencyEditText view){
+        attachedViews.remove(view);
+    }
+
+    static void onLocaleChanged(){
+        generation++;
+        CurrencyTextFormatter.clearFormatterCache();
+        //refreshing a view may detach others, e.g. through a listener
+        CurrencyEditText[] views = attachedViews.toArray(new CurrencyEditText[attachedViews.size()]);
+        for(CurrencyEditText view : views){
+            view.onSystemLocaleChanged();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.blackcat.currencyedittext;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Marks the work done by CurrencyEditText in systrace, when enabled with CurrencyEditText.setTraceSectionsEnabled()
+ * on a device which supports it (API 18 and up).
+ */
+final class TraceSections {
+
+    private static volatile boolean enabled = false;
+
+    private TraceSections(){}
+
+    static void setEnabled(boolean enabled){
+        TraceSections.enabled = enabled;
+    }
+
+    /**
+     * Begins a section named name, if tracing is enabled.
+     * @return Whether a section was begun, to be passed to end().
+     */
+    @TargetApi(18)
+    static boolean begin(String name){
+        if(enabled && Build.VERSION.SDK_INT >= 18){
+            Trace.beginSection(name);
+            return true;
+        }
+        return false;
+    }
+
+    @TargetApi(18)
+    static void end(boolean begun){
+        if(begun){
+            Trace.endSection();
+        }
+    }
+}
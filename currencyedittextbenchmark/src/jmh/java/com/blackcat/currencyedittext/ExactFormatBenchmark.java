@@ -0,0 +1,79 @@
+package com.blackcat.currencyedittext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of exact mode relative to the long path: formatting a value from its digits, as the
+ * text watcher does for values too large for a long, against formatting it from a long, and against
+ * formatting it through BigDecimal and DecimalFormat.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ExactFormatBenchmark {
+
+    @Param({"en-US", "en-IN", "ar-EG"})
+    public String localeTag;
+
+    //a typical amount, the largest long, and a value well beyond it
+    @Param({"123456", "9223372036854775807", "123456789012345678901234567890"})
+    public String rawValue;
+
+    private CurrencyFormatSpec spec;
+    private boolean fitsInLong;
+    private long value;
+    private BigDecimal bigValue;
+    private String formatted;
+    private final StringBuilder digits = new StringBuilder();
+
+    @Setup
+    public void setup(){
+        Locale locale = Locale.forLanguageTag(localeTag);
+        spec = CurrencyTextFormatter.getFormatSpec(locale, Locale.US, 2);
+        BigInteger bigInteger = new BigInteger(rawValue);
+        fitsInLong = bigInteger.bitLength() < 64;
+        value = bigInteger.longValue();
+        bigValue = new BigDecimal(bigInteger, 2);
+        formatted = CurrencyTextFormatter.formatDigits(spec, false, rawValue);
+    }
+
+    /**
+     * The long path, where the value fits; the digits path otherwise.
+     */
+    @Benchmark
+    public String formatLong(){
+        return fitsInLong ? spec.format(value) : spec.formatDigits(false, rawValue);
+    }
+
+    @Benchmark
+    public String formatDigits(){
+        return spec.formatDigits(false, rawValue);
+    }
+
+    @Benchmark
+    public String formatBigDecimal(){
+        return spec.threadDecimalFormat().format(bigValue);
+    }
+
+    /**
+     * The work done by the text watcher for each keystroke in exact mode once the value no longer fits in a long.
+     */
+    @Benchmark
+    public String collectAndFormatDigits(){
+        digits.setLength(0);
+        boolean isNegative = CurrencyTextFormatter.collectDigits(formatted, spec, true, digits);
+        return CurrencyTextFormatter.formatDigits(spec, isNegative, digits);
+    }
+}
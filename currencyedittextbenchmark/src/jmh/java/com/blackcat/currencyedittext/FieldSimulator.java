@@ -0,0 +1,138 @@
+package com.blackcat.currencyedittext;
+
+/**
+ * A field backed by a plain StringBuilder, edited through the same CurrencyInputRules and CurrencyFieldEditor as
+ * the text of a CurrencyEditText, so the per-keystroke work of its input filter and text watcher can be measured
+ * without an Android runtime. Only the framework's part is simulated: filtering each edit, making it and reporting
+ * it to the editor.
+ */
+final class FieldSimulator implements CurrencyFieldEditor.Field {
+
+    private final StringBuilder text = new StringBuilder();
+    private final CurrencyFieldEditor editor = new CurrencyFieldEditor(this);
+    private final CurrencyFormatSpec spec;
+    private final boolean allowNegative;
+    private final boolean exactMode;
+
+    private long rawValue;
+    //the digits of values too large for a long, in exact mode (null otherwise)
+    private String exactDigits;
+    private int cursor;
+
+    FieldSimulator(CurrencyFormatSpec spec, boolean allowNegative){
+        this(spec, allowNegative, false);
+    }
+
+    FieldSimulator(CurrencyFormatSpec spec, boolean allowNegative, boolean exactMode){
+        this.spec = spec;
+        this.allowNegative = allowNegative;
+        this.exactMode = exactMode;
+    }
+
+    void clear(){
+        edit(0, text.length(), "");
+    }
+
+    /**
+     * Types each character of keys at the cursor.
+     */
+    void type(CharSequence keys){
+        for(int i = 0; i < keys.length(); i++){
+            edit(cursor, cursor, keys.subSequence(i, i + 1));
+        }
+    }
+
+    /**
+     * Deletes the character before the cursor, count times.
+     */
+    void backspace(int count){
+        for(int i = 0; i < count && cursor > 0; i++){
+            edit(cursor - 1, cursor, "");
+        }
+    }
+
+    /**
+     * Replaces the whole field with pasted, as a paste over a full selection would.
+     */
+    void paste(CharSequence pasted){
+        edit(0, text.length(), pasted);
+    }
+
+    long getRawValue(){
+        return rawValue;
+    }
+
+    String getExactDigits(){
+        return exactDigits;
+    }
+
+    /**
+     * Replaces text[start, end) with replacement, once the input filter has let it through, the way an EditText
+     * applies an edit from the keyboard or the clipboard.
+     */
+    private void edit(int start, int end, CharSequence replacement){
+        CharSequence filtered = CurrencyInputRules.filter(replacement, 0, replacement.length(), text, start, end,
+                spec, allowNegative, exactMode ? Integer.MAX_VALUE : CurrencyInputRules.MAX_LONG_SAFE_DIGITS);
+        if(filtered != null){
+            replacement = filtered;
+        }
+
+        editor.beforeTextChanged(text, start, end - start, replacement.length());
+        text.delete(start, end);
+        text.insert(start, replacement);
+        editor.onTextChanged(text, start, end - start, replacement.length());
+        cursor = start + replacement.length();
+        editor.afterTextChanged();
+    }
+
+    /*
+    CurrencyFieldEditor.Field
+     */
+
+    @Override
+    public CurrencyFormatSpec getFormatSpec(){
+        return spec;
+    }
+
+    @Override
+    public boolean areNegativeValuesAllowed(){
+        return allowNegative;
+    }
+
+    @Override
+    public boolean isExactMode(){
+        return exactMode;
+    }
+
+    @Override
+    public void setRawValue(long value){
+        rawValue = value;
+        exactDigits = null;
+    }
+
+    @Override
+    public void setRawValueExact(boolean isNegative, String digits){
+        rawValue = 0;
+        exactDigits = digits;
+    }
+
+    @Override
+    public CharSequence getText(){
+        return text;
+    }
+
+    @Override
+    public void replaceText(int start, int end, CharSequence replacement, int replacementStart, int replacementEnd){
+        text.delete(start, end);
+        text.insert(start, replacement, replacementStart, replacementEnd);
+    }
+
+    @Override
+    public void setCursor(int position){
+        cursor = position;
+    }
+
+    @Override
+    public void onTextDisplayed(){
+    }
+}
@@ -0,0 +1,93 @@
+package com.blackcat.currencyedittext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.DecimalFormat;
+import java.util.Currency;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of formatting and parsing a single value, as done on every keystroke.
+ *
+ * The legacyPipeline benchmark reproduces the original regex/double/DecimalFormat implementation of
+ * CurrencyTextFormatter.formatText() so that engines can be compared on the same machine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class FormatTextBenchmark {
+
+    //US, Japan (no fraction digits), Germany (suffixed symbol), India (lakh grouping), Egypt (Arabic digits)
+    @Param({"en-US", "ja-JP", "de-DE", "en-IN", "ar-EG"})
+    public String localeTag;
+
+    @Param({"7", "123456", "1234567890123"})
+    public String rawValue;
+
+    //-1 uses the currency's default number of fraction digits
+    @Param({"-1", "8"})
+    public int decimalDigits;
+
+    private Locale locale;
+    private int digits;
+    private long value;
+    private CurrencyFormatSpec spec;
+    private char[] buffer;
+    private String formatted;
+    private final ParseResult parseResult = new ParseResult();
+
+    @Setup
+    public void setup(){
+        locale = Locale.forLanguageTag(localeTag);
+        digits = decimalDigits >= 0 ? decimalDigits : Currency.getInstance(locale).getDefaultFractionDigits();
+        value = Long.parseLong(rawValue);
+        spec = CurrencyTextFormatter.getFormatSpec(locale, Locale.US, digits);
+        buffer = new char[spec.getMaxLength()];
+        formatted = CurrencyTextFormatter.formatText(rawValue, locale, Locale.US, digits);
+    }
+
+    @Benchmark
+    public String formatText(){
+        return CurrencyTextFormatter.formatText(rawValue, locale, Locale.US, digits);
+    }
+
+    @Benchmark
+    public String formatSpecToString(){
+        return spec.format(value);
+    }
+
+    @Benchmark
+    public int formatSpecIntoBuffer(){
+        return spec.format(value, buffer, 0);
+    }
+
+    @Benchmark
+    public long parse(){
+        CurrencyTextFormatter.parse(formatted, spec, true, parseResult);
+        return parseResult.getValue();
+    }
+
+    @Benchmark
+    public String legacyPipeline(){
+        String val = rawValue;
+        DecimalFormat currencyFormatter = (DecimalFormat) DecimalFormat.getCurrencyInstance(locale);
+        boolean isNegative = val.contains("-");
+        val = val.replaceAll("[^\\d]", "");
+        if (val.length() <= digits){
+            val = String.format("%" + digits + "s", val).replace(' ', '0');
+        }
+        String preparedVal = new StringBuilder(val).insert(val.length() - digits, '.').toString();
+        double newTextValue = Double.valueOf(preparedVal);
+        newTextValue *= isNegative ? -1 : 1;
+        currencyFormatter.setMinimumFractionDigits(digits);
+        return currencyFormatter.format(newTextValue);
+    }
+}
@@ -0,0 +1,78 @@
+package com.blackcat.currencyedittext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Currency;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays typing sessions through the code a CurrencyEditText runs for each edit: its input rules and the
+ * CurrencyFieldEditor behind its text watcher. Each benchmark performs KEYSTROKES edits, so scores are reported
+ * per keystroke.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class TypingReplayBenchmark {
+
+    private static final int KEYSTROKES = 16;
+
+    @Param({"en-US", "ja-JP", "de-DE", "en-IN", "ar-EG"})
+    public String localeTag;
+
+    private FieldSimulator field;
+
+    @Setup
+    public void setup(){
+        Locale locale = Locale.forLanguageTag(localeTag);
+        int digits = Currency.getInstance(locale).getDefaultFractionDigits();
+        field = new FieldSimulator(CurrencyTextFormatter.getFormatSpec(locale, Locale.US, digits), true);
+    }
+
+    /**
+     * Clears the field, then types a 15 digit amount.
+     */
+    @Benchmark
+    @OperationsPerInvocation(KEYSTROKES)
+    public long typeAmount(){
+        field.clear();
+        field.type("123456789012345");
+        return field.getRawValue();
+    }
+
+    /**
+     * Clears the field, types an amount, corrects its last digits and makes it negative.
+     */
+    @Benchmark
+    @OperationsPerInvocation(KEYSTROKES)
+    public long typeAndCorrect(){
+        field.clear();
+        field.type("12345678");
+        field.backspace(3);
+        field.type("999");
+        field.type("-");
+        return field.getRawValue();
+    }
+
+    /**
+     * Pastes a formatted amount over the field, which requires parsing the whole text.
+     */
+    @Benchmark
+    @OperationsPerInvocation(KEYSTROKES)
+    public long paste(){
+        for(int i = 0; i < KEYSTROKES / 2; i++){
+            field.paste("$1,234,567.89");
+            field.paste("-$98,765.43");
+        }
+        return field.getRawValue();
+    }
+}
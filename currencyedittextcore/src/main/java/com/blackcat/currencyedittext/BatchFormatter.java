@@ -0,0 +1,195 @@
+package com.blackcat.currencyedittext;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Formats arrays of values with a single CurrencyFormatSpec, optionally splitting large arrays into
+ * one chunk per core. The calling thread always formats the first chunk itself and then waits for
+ * the remaining chunks to be finished by the executor.
+ */
+final class BatchFormatter {
+
+    //batches smaller than this are formatted on the calling thread, as splitting them costs more than it saves
+    static final int PARALLEL_THRESHOLD = 2048;
+
+    private BatchFormatter(){}
+
+    static String[] formatAll(final CurrencyFormatSpec spec, final long[] values, Executor executor){
+        final String[] results = new String[values.length];
+        int[] bounds = split(values.length, executor);
+        ChunkTask[] tasks = new ChunkTask[bounds.length - 1];
+        for(int i = 0; i < tasks.length; i++){
+            tasks[i] = new ChunkTask(bounds[i], bounds[i + 1]){
+                @Override
+                void format(){
+                    for(int j = from; j < to; j++){
+                        results[j] = CurrencyTextFormatter.formatUncached(spec, values[j], values[j] < 0);
+                    }
+                }
+            };
+        }
+        run(tasks, executor);
+        return results;
+    }
+
+    static FormattedBatch formatPacked(final CurrencyFormatSpec spec, final long[] values, Executor executor){
+        int[] bounds = split(values.length, executor);
+        PackingTask[] tasks = new PackingTask[bounds.length - 1];
+        for(int i = 0; i < tasks.length; i++){
+            tasks[i] = new PackingTask(spec, values, bounds[i], bounds[i + 1]);
+        }
+        run(tasks, executor);
+
+        //stitch the chunks together, shifting each chunk's offsets by the length of the chunks before it
+        int totalLength = 0;
+        for(PackingTask task : tasks){
+            totalLength += task.length;
+        }
+        char[] chars = new char[totalLength];
+        int[] offsets = new int[values.length + 1];
+        int position = 0;
+        for(PackingTask task : tasks){
+            System.arraycopy(task.chars, 0, chars, position, task.length);
+            for(int j = task.from; j < task.to; j++){
+                offsets[j + 1] = position + task.ends[j - task.from];
+            }
+            position += task.length;
+        }
+        return new FormattedBatch(chars, offsets);
+    }
+
+    /**
+     * Divides count values into ranges, one per available core if an executor is provided and the
+     * batch is large enough to be worth splitting. Range i spans bounds[i] up to bounds[i + 1].
+     */
+    private static int[] split(int count, Executor executor){
+        int chunks = 1;
+        if(executor != null && count >= PARALLEL_THRESHOLD){
+            chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), count / (PARALLEL_THRESHOLD / 2)));
+        }
+        int[] bounds = new int[chunks + 1];
+        for(int i = 1; i <= chunks; i++){
+            bounds[i] = (int) ((long) count * i / chunks);
+        }
+        return bounds;
+    }
+
+    private static void run(ChunkTask[] tasks, Executor executor){
+        if(tasks.length == 1){
+            tasks[0].format();
+            return;
+        }
+
+        CountDownLatch latch = new CountDownLatch(tasks.length - 1);
+        for(int i = 1; i < tasks.length; i++){
+            tasks[i].latch = latch;
+            try{
+                executor.execute(tasks[i]);
+            }
+            catch(RejectedExecutionException e){
+                //the executor is saturated or shut down, so do the work here instead
+                tasks[i].run();
+            }
+        }
+        tasks[0].format();
+
+        boolean interrupted = false;
+        while(true){
+            try{
+                latch.await();
+                break;
+            }
+            catch(InterruptedException e){
+                interrupted = true;
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+
+        for(ChunkTask task : tasks){
+            if(task.failure != null){
+                throw task.failure;
+            }
+        }
+    }
+
+    private static class ChunkTask implements Runnable {
+        final int from;
+        final int to;
+
+        CountDownLatch latch;
+        volatile RuntimeException failure;
+
+        ChunkTask(int from, int to){
+            this.from = from;
+            this.to = to;
+        }
+
+        void format(){}
+
+        @Override
+        public final void run(){
+            try{
+                format();
+            }
+            catch(RuntimeException e){
+                failure = e;
+            }
+            finally{
+                latch.countDown();
+            }
+        }
+    }
+
+    private static final class PackingTask extends ChunkTask {
+        private final CurrencyFormatSpec spec;
+        private final long[] values;
+
+        char[] chars;
+        int[] ends;
+        int length;
+
+        PackingTask(CurrencyFormatSpec spec, long[] values, int from, int to){
+            super(from, to);
+            this.spec = spec;
+            this.values = values;
+        }
+
+        @Override
+        void format(){
+            int count = to - from;
+            int maxLength = spec.getMaxLength();
+            ends = new int[count];
+            //most values are far shorter than the maximum length, so start small and grow as needed
+            chars = new char[Math.max(maxLength, count * 16)];
+
+            int position = 0;
+            for(int j = 0; j < count; j++){
+                if(chars.length - position < maxLength){
+                    char[] grown = new char[Math.max(chars.length * 2, position + maxLength)];
+                    System.arraycopy(chars, 0, grown, 0, position);
+                    chars = grown;
+                }
+                long value = values[from + j];
+                if(spec.isExact()){
+                    position += spec.format(value, chars, position);
+                }
+                else{
+                    String formatted = CurrencyTextFormatter.formatUncached(spec, value, value < 0);
+                    if(chars.length - position < formatted.length()){
+                        char[] grown = new char[Math.max(chars.length * 2, position + formatted.length())];
+                        System.arraycopy(chars, 0, grown, 0, position);
+                        chars = grown;
+                    }
+                    formatted.getChars(0, formatted.length(), chars, position);
+                    position += formatted.length();
+                }
+                ends[j] = position;
+            }
+            length = position;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.blackcat.currencyedittext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small, thread-safe, least-recently-used map used to hold expensive-to-build formatting objects.
+ *
+ * Once the cache holds maxSize entries, inserting a new entry evicts the least recently accessed one.
+ * Hit, miss and eviction counts are tracked so callers can tune the size of the cache.
+ */
+final class BoundedCache<K, V> {
+
+    private final LinkedHashMap<K, V> map;
+    private int maxSize;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    BoundedCache(int maxSize){
+        if(maxSize < 1){
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the value cached for key, or null if there is none. Counts towards the hit/miss statistics.
+     */
+    synchronized V get(K key){
+        V value = map.get(key);
+        if(value != null){
+            hitCount++;
+        }
+        else{
+            missCount++;
+        }
+        return value;
+    }
+
+    /**
+     * Returns true if a value is cached for key. Unlike get(), this neither counts towards the statistics nor
+     * marks the entry as recently used.
+     */
+    synchronized boolean containsKey(K key){
+        return map.containsKey(key);
+    }
+
+    /**
+     * Caches value under key, evicting the least recently used entries if the cache is full.
+     */
+    synchronized void put(K key, V value){
+        map.put(key, value);
+        trimToSize();
+    }
+
+    synchronized void clear(){
+        map.clear();
+    }
+
+    synchronized int size(){
+        return map.size();
+    }
+
+    synchronized int maxSize(){
+        return maxSize;
+    }
+
+    synchronized void resize(int newMaxSize){
+        if(newMaxSize < 1){
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        maxSize = newMaxSize;
+        trimToSize();
+    }
+
+    synchronized CacheStats stats(){
+        return new CacheStats(hitCount, missCount, evictionCount, map.size(), maxSize);
+    }
+
+    private void trimToSize(){
+        while(map.size() > maxSize){
+            Map.Entry<K, V> eldest = map.entrySet().iterator().next();
+            map.remove(eldest.getKey());
+            evictionCount++;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.blackcat.currencyedittext;
+
+import java.util.Locale;
+
+/**
+ * An immutable snapshot of the statistics of one of CurrencyEditText's internal caches.
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+    private final int maxSize;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, int size, int maxSize){
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The number of lookups which found a cached value.
+     */
+    public long getHitCount(){
+        return hitCount;
+    }
+
+    /**
+     * The number of lookups which did not find a cached value, forcing the value to be built.
+     */
+    public long getMissCount(){
+        return missCount;
+    }
+
+    /**
+     * The number of entries removed from the cache to make room for new ones.
+     */
+    public long getEvictionCount(){
+        return evictionCount;
+    }
+
+    /**
+     * The number of entries held by the cache when this snapshot was taken.
+     */
+    public int getSize(){
+        return size;
+    }
+
+    /**
+     * The maximum number of entries the cache will hold.
+     */
+    public int getMaxSize(){
+        return maxSize;
+    }
+
+    /**
+     * Returns the ratio of hits to total lookups, or 0 if no lookups have been made.
+     */
+    public double getHitRate(){
+        long total = hitCount + missCount;
+        return total == 0 ? 0d : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString(){
+        return String.format(Locale.US, "CacheStats[hits=%d, misses=%d, evictions=%d, size=%d/%d]", hitCount, missCount, evictionCount, size, maxSize);
+    }
+}
@@ -0,0 +1,65 @@
+package com.blackcat.currencyedittext;
+
+import java.util.Currency;
+import java.util.Locale;
+
+/**
+ * Everything resolved from a locale and decimal digit configuration: the formatter, the currency and its symbol.
+ *
+ * Instances are immutable and interned, so every CurrencyEditText with the same configuration shares one, and a
+ * view resolves its configuration with a single lookup instead of looking up its currency, symbol and formatting
+ * rules itself. The currency symbol depends on the default locale, so the shared configurations are discarded
+ * (with CurrencyTextFormatter.clearFormatterCache()) whenever the system locale changes.
+ */
+final class CurrencyConfig {
+
+    private static final int CACHE_SIZE = 32;
+
+    private static final BoundedCache<CurrencyTextFormatter.FormatterKey, CurrencyConfig> configs = new BoundedCache<>(CACHE_SIZE);
+
+    private final CurrencyFormatter formatter;
+    private final Currency currency;
+    private final String symbol;
+
+    private CurrencyConfig(Locale locale, Locale defaultLocale, int decimalDigits){
+        this.formatter = new CurrencyFormatter(locale, defaultLocale, decimalDigits);
+        this.currency = CurrencyResolver.resolve(locale, defaultLocale);
+        this.symbol = currency.getSymbol();
+    }
+
+    /**
+     * Returns the shared configuration for the given locales and number of decimal digits.
+     * @throws IllegalArgumentException If decimalDigits does not fall within the range (0, 340) inclusive.
+     */
+    static CurrencyConfig obtain(Locale locale, Locale defaultLocale, int decimalDigits){
+        CurrencyTextFormatter.FormatterKey key = new CurrencyTextFormatter.FormatterKey(locale, defaultLocale, decimalDigits);
+        CurrencyConfig config = configs.get(key);
+        if(config == null){
+            config = new CurrencyConfig(locale, defaultLocale, decimalDigits);
+            configs.put(key, config);
+        }
+        return config;
+    }
+
+    static void clear(){
+        configs.clear();
+    }
+
+    CurrencyFormatter getFormatter(){
+        return formatter;
+    }
+
+    /**
+     * The currency of the locale, or of the default locale if it has none, or failing that, USD.
+     */
+    Currency getCurrency(){
+        return currency;
+    }
+
+    /**
+     * The symbol of the currency in the default locale, which CurrencyEditText shows as its default hint.
+     */
+    String getSymbol(){
+        return symbol;
+    }
+}
@@ -0,0 +1,241 @@
+package com.blackcat.currencyedittext;
+
+/**
+ * Processes the edits made to the text of a currency field: each edit is turned into the field's new raw value,
+ * the text is replaced with the value's formatted text and the cursor is put back where it belongs.
+ *
+ * This is the part of CurrencyTextWatcher which does not depend on Android. The watcher forwards its TextWatcher
+ * callbacks here, while benchmarks and tests drive the same code against a plain StringBuilder, so that what they
+ * measure is what ships.
+ */
+final class CurrencyFieldEditor {
+
+    /**
+     * The field being edited, e.g. a CurrencyEditText.
+     */
+    interface Field {
+
+        CurrencyFormatSpec getFormatSpec();
+
+        boolean areNegativeValuesAllowed();
+
+        boolean isExactMode();
+
+        void setRawValue(long value);
+
+        /**
+         * Sets a value too large for a long, given as its sign and the ASCII digits of its magnitude.
+         */
+        void setRawValueExact(boolean isNegative, String digits);
+
+        CharSequence getText();
+
+        /**
+         * Replaces text[start, end) with replacement[replacementStart, replacementEnd).
+         */
+        void replaceText(int start, int end, CharSequence replacement, int replacementStart, int replacementEnd);
+
+        void setCursor(int position);
+
+        /**
+         * Called once the text of an edit, or of a value, has been displayed.
+         */
+        void onTextDisplayed();
+    }
+
+    private final Field field;
+
+    private boolean ignoreIteration;
+    private String lastGoodInput;
+
+    //turns each edit into a new raw value, usually without looking at the rest of the text
+    private final KeystrokeInterpreter interpreter = new KeystrokeInterpreter();
+
+    //reused to collect the digits of values too large for a long, in exact mode
+    private final StringBuilder wideDigits = new StringBuilder();
+
+    CurrencyFieldEditor(Field field){
+        this.field = field;
+        lastGoodInput = "";
+        ignoreIteration = false;
+    }
+
+    /**
+     * Ignores edits until called again with false, e.g. while the framework restores text which the view is about
+     * to replace with its own.
+     */
+    void setIgnoringEdits(boolean ignoring){
+        ignoreIteration = ignoring;
+    }
+
+    /**
+     * Whether edits are being ignored, which is the case while the editor replaces the text with formatted text
+     * it has already validated.
+     */
+    boolean isIgnoringEdits(){
+        return ignoreIteration;
+    }
+
+    void beforeTextChanged(CharSequence text, int start, int count, int after){
+        if(!ignoreIteration){
+            interpreter.beforeTextChanged(text, start, count, after);
+        }
+    }
+
+    void onTextChanged(CharSequence text, int start, int before, int count){
+        if(!ignoreIteration){
+            interpreter.onTextChanged(text, start, before, count);
+        }
+    }
+
+    /**
+     * Processes the edit reported by the last calls to beforeTextChanged() and onTextChanged(), once it has been
+     * made to the field's text. Reports its latency to the metrics listener, if any.
+     */
+    void afterTextChanged(){
+        //Use the ignoreIteration flag to stop our edits to the text field from triggering an endlessly recursive call to afterTextChanged
+        if(ignoreIteration){
+            return;
+        }
+
+        CurrencyMetricsListener metrics = CurrencyTextFormatter.getMetricsListener();
+        long start = metrics != null ? System.nanoTime() : 0;
+        try{
+            processEdit();
+        }
+        catch(RuntimeException e){
+            CurrencyTextFormatter.reportError(e);
+            throw e;
+        }
+        finally{
+            if(metrics != null){
+                metrics.onKeystroke(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void processEdit(){
+        CharSequence text = field.getText();
+        String textToDisplay;
+
+        CurrencyFormatSpec spec = field.getFormatSpec();
+        int outcome = interpreter.apply(text, spec, field.areNegativeValuesAllowed());
+
+        if (outcome == KeystrokeInterpreter.CLEARED){
+            lastGoodInput = "";
+            field.setRawValue(0);
+            applyText("");
+            interpreter.displayed("", spec);
+            field.onTextDisplayed();
+            return;
+        }
+
+        if(outcome == KeystrokeInterpreter.VALUE_CHANGED){
+            //Store a copy of the raw input to be retrieved later by getRawValue
+            field.setRawValue(interpreter.getValue());
+            if(field.isExactMode()){
+                textToDisplay = CurrencyTextFormatter.formatValueExact(spec, interpreter.getValue(), interpreter.isNegative());
+            }
+            else{
+                textToDisplay = CurrencyTextFormatter.format(interpreter.toParseResult(), spec, text);
+            }
+            interpreter.displayed(textToDisplay, spec);
+        }
+        else if(outcome == KeystrokeInterpreter.OVERFLOW && field.isExactMode()){
+            //the value no longer fits in a long; keep its digits instead, without converting them to a number
+            wideDigits.setLength(0);
+            boolean isNegative = CurrencyTextFormatter.collectDigits(text, spec, field.areNegativeValuesAllowed(), wideDigits);
+            String digits = wideDigits.toString();
+            field.setRawValueExact(isNegative, digits);
+            textToDisplay = CurrencyTextFormatter.formatDigits(spec, isNegative, digits);
+            interpreter.displayedOverflow(textToDisplay, spec);
+        }
+        else if(outcome == KeystrokeInterpreter.SIGN_ONLY){
+            //special case for the start of a negative number
+            textToDisplay = "-";
+            interpreter.displayed(textToDisplay, spec);
+        }
+        else{
+            //the value did not change, so there is nothing to format; put back what was there before the edit
+            textToDisplay = lastGoodInput;
+            interpreter.revert();
+        }
+
+        applyText(textToDisplay);
+        //Store the last known good input so if there are any issues with new input later, we can fall back gracefully.
+        lastGoodInput = textToDisplay;
+
+        //Keep the cursor where it was relative to the digits. For edits at the end of the numerical value, this puts it after the last digit,
+        //to enter the next number in a right-to-left fashion, like you would on a calculator.
+        int cursorPosition = interpreter.cursorFor(text, spec);
+        if (text.length() >= cursorPosition){
+            field.setCursor(cursorPosition);
+        }
+        field.onTextDisplayed();
+    }
+
+    /**
+     * Displays text which the field has already formatted from value, without parsing and formatting it again
+     * as afterTextChanged() would. text must have been formatted by the field's current format spec.
+     */
+    void displayValue(long value, String text){
+        field.setRawValue(value);
+        applyText(text);
+        lastGoodInput = text;
+        interpreter.displayed(value, text, field.getFormatSpec());
+        displayed();
+    }
+
+    /**
+     * Displays text which the field has already formatted from a value too large for a long, given as its sign
+     * and the ASCII digits of its magnitude.
+     */
+    void displayWideValue(boolean isNegative, String digits, String text){
+        field.setRawValueExact(isNegative, digits);
+        applyText(text);
+        lastGoodInput = text;
+        interpreter.displayedOverflow(text, field.getFormatSpec());
+        displayed();
+    }
+
+    private void displayed(){
+        int cursorPosition = interpreter.getDigitsEnd();
+        if (field.getText().length() >= cursorPosition){
+            field.setCursor(cursorPosition);
+        }
+        field.onTextDisplayed();
+    }
+
+    /**
+     * Makes the field's text match text by replacing only the range of characters that differ between them.
+     * Compared to setText(), this leaves spans and IME state outside the edit alone, and lets the layout update
+     * just the changed characters.
+     */
+    private void applyText(String text){
+        CharSequence current = field.getText();
+        int oldLength = current.length();
+        int newLength = text.length();
+
+        int sharedLength = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while(prefix < sharedLength && current.charAt(prefix) == text.charAt(prefix)){
+            prefix++;
+        }
+        if(prefix == oldLength && prefix == newLength){
+            return;
+        }
+
+        int suffix = 0;
+        while(suffix < sharedLength - prefix && current.charAt(oldLength - 1 - suffix) == text.charAt(newLength - 1 - suffix)){
+            suffix++;
+        }
+
+        ignoreIteration = true;
+        try{
+            field.replaceText(prefix, oldLength - suffix, text, prefix, newLength - suffix);
+        }
+        finally{
+            ignoreIteration = false;
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.blackcat.currencyedittext;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * The compiled formatting rules for a single locale/decimal digit configuration.
+ *
+ * A CurrencyFormatSpec captures everything DecimalFormat would look up while formatting a currency value
+ * (prefixes and suffixes for positive and negative values, the grouping and decimal separators, grouping sizes
+ * and the locale's zero digit) so that values held in their lowest denomination (e.g. pennies) can be written
+ * straight into a caller-supplied buffer, without going through String manipulation or floating point math.
+ *
+ * Instances are immutable and may be shared freely between threads. Obtain them through
+ * CurrencyTextFormatter.getFormatSpec().
+ */
+public final class CurrencyFormatSpec {
+
+    //number of characters needed to write the digits of Long.MIN_VALUE
+    private static final int MAX_LONG_DIGITS = 19;
+
+    //DecimalFormat will not show more fraction digits than this
+    static final int MAX_FRACTION_DIGITS = 340;
+
+    private static final ThreadLocal<char[]> scratchBuffer = new ThreadLocal<char[]>();
+
+    private final DecimalFormat prototype;
+    private final ThreadLocal<DecimalFormat> threadDecimalFormats = new ThreadLocal<DecimalFormat>();
+    private final int decimalDigits;
+
+    private final String positivePrefix;
+    private final String positiveSuffix;
+    private final String negativePrefix;
+    private final String negativeSuffix;
+
+    private final char zeroDigit;
+    private final char decimalSeparator;
+    private final char groupingSeparator;
+    private final int primaryGroupingSize;
+    private final int secondaryGroupingSize;
+    private final char minusSign;
+
+    //every non-digit character this spec may produce, used to tell formatting apart from garbage when parsing
+    private final String formattingChars;
+
+    private final boolean exact;
+    private final int maxLength;
+
+    private CurrencyFormatSpec(DecimalFormat prototype, int decimalDigits, int primaryGroupingSize, int secondaryGroupingSize, boolean exact){
+        DecimalFormatSymbols symbols = prototype.getDecimalFormatSymbols();
+
+        this.prototype = prototype;
+        this.decimalDigits = decimalDigits;
+        this.positivePrefix = prototype.getPositivePrefix();
+        this.positiveSuffix = prototype.getPositiveSuffix();
+        this.negativePrefix = prototype.getNegativePrefix();
+        this.negativeSuffix = prototype.getNegativeSuffix();
+        this.zeroDigit = symbols.getZeroDigit();
+        this.decimalSeparator = symbols.getMonetaryDecimalSeparator();
+        this.groupingSeparator = symbols.getGroupingSeparator();
+        this.primaryGroupingSize = primaryGroupingSize;
+        this.secondaryGroupingSize = secondaryGroupingSize;
+        this.minusSign = symbols.getMinusSign();
+        this.formattingChars = positivePrefix + positiveSuffix + negativePrefix + negativeSuffix + decimalSeparator + groupingSeparator;
+        this.exact = exact;
+
+        int affixLength = Math.max(positivePrefix.length() + positiveSuffix.length(), negativePrefix.length() + negativeSuffix.length());
+        int integerDigits = Math.max(1, MAX_LONG_DIGITS - decimalDigits);
+        int groupingSeparators = primaryGroupingSize > 0 ? integerDigits : 0;
+        this.maxLength = affixLength + integerDigits + groupingSeparators + 1 + decimalDigits;
+    }
+
+    /**
+     * Compiles the rules of the given currency formatter. The prototype must already be configured with
+     * the desired number of fraction digits, and must not be modified afterwards.
+     *
+     * The compiled rules are checked against the output of the prototype itself. If they disagree (for
+     * instance because the locale uses a formatting feature the engine does not understand), the returned
+     * spec is marked as inexact and callers should fall back to formatting with DecimalFormat.
+     */
+    static CurrencyFormatSpec compile(DecimalFormat prototype, int decimalDigits){
+        int primary = prototype.isGroupingUsed() ? prototype.getGroupingSize() : 0;
+        int secondary = findSecondaryGroupingSize(prototype.toPattern(), primary);
+
+        boolean supported = decimalDigits >= 0
+                && decimalDigits <= MAX_FRACTION_DIGITS
+                && !prototype.isDecimalSeparatorAlwaysShown()
+                && prototype.getMultiplier() == 1;
+
+        if(supported){
+            //not every DecimalFormat implementation honors secondary grouping sizes, so try both
+            if(matchesPrototype(prototype, primary, secondary)){
+                return new CurrencyFormatSpec(prototype, decimalDigits, primary, secondary, true);
+            }
+            if(secondary != primary && matchesPrototype(prototype, primary, primary)){
+                return new CurrencyFormatSpec(prototype, decimalDigits, primary, primary, true);
+            }
+        }
+        return new CurrencyFormatSpec(prototype, decimalDigits, primary, secondary, false);
+    }
+
+    /**
+     * Returns true if values formatted by this spec are guaranteed to match the output of DecimalFormat.
+     */
+    public boolean isExact(){
+        return exact;
+    }
+
+    /**
+     * The number of digits shown following the decimal separator.
+     */
+    public int getDecimalDigits(){
+        return decimalDigits;
+    }
+
+    /**
+     * The maximum number of characters format() can write for any long value. A buffer of this size
+     * can be reused for every call.
+     */
+    public int getMaxLength(){
+        return maxLength;
+    }
+
+    /**
+     * Formats the given value, represented in the currencies lowest denomination, into dest.
+     *
+     * @param value The value to format, e.g. 1337 for $13.37.
+     * @param dest The buffer to write the formatted value into.
+     * @param offset The position in dest at which to start writing.
+     * @return The number of characters written.
+     * @throws IndexOutOfBoundsException If dest does not have room for the formatted value. getMaxLength()
+     *  characters will always be enough.
+     */
+    public int format(long value, char[] dest, int offset){
+        boolean isNegative = value < 0;
+        return write(isNegative, isNegative ? value : -value, dest, offset);
+    }
+
+    /**
+     * Formats the given value, represented in the currencies lowest denomination, onto the end of dest.
+     */
+    public void formatTo(long value, StringBuilder dest){
+        char[] buffer = obtainScratchBuffer();
+        int length = format(value, buffer, 0);
+        dest.append(buffer, 0, length);
+    }
+
+    /**
+     * Formats the given value, represented in the currencies lowest denomination, onto the end of dest.
+     * @throws IOException If dest throws while being appended to.
+     */
+    public void formatTo(long value, Appendable dest) throws IOException {
+        if(dest instanceof StringBuilder){
+            formatTo(value, (StringBuilder) dest);
+            return;
+        }
+        char[] buffer = obtainScratchBuffer();
+        int length = format(value, buffer, 0);
+        for(int i = 0; i < length; i++){
+            dest.append(buffer[i]);
+        }
+    }
+
+    /**
+     * Formats the given value, represented in the currencies lowest denomination, as a new String.
+     */
+    public String format(long value){
+        char[] buffer = obtainScratchBuffer();
+        int length = format(value, buffer, 0);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Returns the numeric value of c if it is an ASCII digit or a digit of this spec's locale, or -1 otherwise.
+     */
+    int digitValue(char c){
+        if(c >= '0' && c <= '9'){
+            return c - '0';
+        }
+        int value = c - zeroDigit;
+        return value >= 0 && value <= 9 ? value : -1;
+    }
+
+    /**
+     * Returns the position just after the last digit of a value of the given sign which this spec formatted
+     * into length characters.
+     */
+    int digitsEnd(boolean isNegative, int length){
+        return length - (isNegative ? negativeSuffix : positiveSuffix).length();
+    }
+
+    /**
+     * Returns the number of digits following offset in text which this spec formatted from a value of the given
+     * sign into length characters. Computed from the layout of the text, without reading it.
+     */
+    int digitsAfter(boolean isNegative, int length, int offset){
+        int end = digitsEnd(isNegative, length);
+        if(offset >= end){
+            return 0;
+        }
+        int digits = 0;
+        int integerEnd = end;
+        if(decimalDigits > 0){
+            integerEnd = end - decimalDigits - 1;
+            if(offset > integerEnd){
+                return end - offset;
+            }
+            digits = decimalDigits;
+        }
+        int start = (isNegative ? negativePrefix : positivePrefix).length();
+        return digits + integerDigitsIn(integerEnd - Math.max(offset, start));
+    }
+
+    /**
+     * Returns the offset in text which this spec formatted from a value of the given sign into length characters
+     * which is followed by exactly digitsAfter digits (or the offset of the first digit, if there are fewer).
+     * Separators right of such an offset are skipped, so that the offset directly follows a digit where possible.
+     * Computed from the layout of the text, without reading it.
+     */
+    int offsetWithDigitsAfter(boolean isNegative, int length, int digitsAfter){
+        int end = digitsEnd(isNegative, length);
+        if(digitsAfter <= 0){
+            return end;
+        }
+        int integerEnd = end;
+        if(decimalDigits > 0){
+            if(digitsAfter < decimalDigits){
+                return end - digitsAfter;
+            }
+            digitsAfter -= decimalDigits;
+            integerEnd = end - decimalDigits - 1;
+        }
+        int start = (isNegative ? negativePrefix : positivePrefix).length();
+        if(digitsAfter >= integerDigitsIn(integerEnd - start)){
+            return start;
+        }
+        //another integer digit lies to the left, along with any separator which belongs to its right
+        return integerEnd - digitsAfter - countGroupingSeparators(digitsAfter + 1);
+    }
+
+    boolean isMinusSign(char c){
+        return c == '-' || c == minusSign;
+    }
+
+    /**
+     * Returns true if c is a character this spec may write besides digits, or whitespace.
+     */
+    boolean isFormattingChar(char c){
+        return formattingChars.indexOf(c) >= 0 || Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+
+    /**
+     * Returns every character this spec may write: its ten digits, its minus sign and its formatting characters
+     * (some of which may appear more than once).
+     */
+    String glyphs(){
+        StringBuilder glyphs = new StringBuilder(12 + formattingChars.length());
+        for(int digit = 0; digit < 10; digit++){
+            glyphs.append((char) (zeroDigit + digit));
+        }
+        return glyphs.append(minusSign).append(formattingChars).toString();
+    }
+
+    /**
+     * Returns a DecimalFormat configured identically to the one this spec was compiled from. DecimalFormat is not
+     * thread-safe, so each thread is given its own copy, which it may reuse for as long as the spec is in use.
+     */
+    DecimalFormat threadDecimalFormat(){
+        DecimalFormat format = threadDecimalFormats.get();
+        if(format == null){
+            format = (DecimalFormat) prototype.clone();
+            threadDecimalFormats.set(format);
+        }
+        return format;
+    }
+
+    /**
+     * Formats a value given as its sign and negated magnitude. Working with the negated magnitude allows
+     * Long.MIN_VALUE to be written, and keeping the sign separate allows a negative zero (e.g. "-0") to be
+     * formatted the same way DecimalFormat formats -0.0.
+     */
+    String format(boolean isNegative, long negatedMagnitude){
+        char[] buffer = obtainScratchBuffer();
+        int length = write(isNegative, negatedMagnitude, buffer, 0);
+        return new String(buffer, 0, length);
+    }
+
+    private int write(boolean isNegative, long negatedMagnitude, char[] dest, int offset){
+        String prefix = isNegative ? negativePrefix : positivePrefix;
+        String suffix = isNegative ? negativeSuffix : positiveSuffix;
+
+        int valueDigits = countDigits(negatedMagnitude);
+        int integerDigits = Math.max(1, valueDigits - decimalDigits);
+        int separators = countGroupingSeparators(integerDigits);
+
+        int length = prefix.length() + integerDigits + separators + (decimalDigits > 0 ? 1 + decimalDigits : 0) + suffix.length();
+        if(offset < 0 || offset + length > dest.length){
+            throw new IndexOutOfBoundsException("Buffer too small for formatted value; " + length + " characters required");
+        }
+
+        //write from right to left, since the position of each digit depends on how many follow it
+        int pos = offset + length;
+
+        pos -= suffix.length();
+        suffix.getChars(0, suffix.length(), dest, pos);
+
+        long remaining = negatedMagnitude;
+        if(decimalDigits > 0){
+            for(int i = 0; i < decimalDigits; i++){
+                dest[--pos] = (char) (zeroDigit - (remaining % 10));
+                remaining /= 10;
+            }
+            dest[--pos] = decimalSeparator;
+        }
+
+        for(int i = 0; i < integerDigits; i++){
+            if(i > 0 && isGroupingPosition(i)){
+                dest[--pos] = groupingSeparator;
+            }
+            dest[--pos] = (char) (zeroDigit - (remaining % 10));
+            remaining /= 10;
+        }
+
+        pos -= prefix.length();
+        prefix.getChars(0, prefix.length(), dest, pos);
+
+        return length;
+    }
+
+    /**
+     * Formats a value of any size, given as its sign and the ASCII digits of its magnitude in the currencies
+     * lowest denomination. Unlike DecimalFormat, which formats through a double, every digit is kept.
+     * @param digits At least one ASCII digit, and nothing else. Leading zeros are ignored.
+     */
+    String formatDigits(boolean isNegative, CharSequence digits){
+        String prefix = isNegative ? negativePrefix : positivePrefix;
+        String suffix = isNegative ? negativeSuffix : positiveSuffix;
+
+        int first = 0;
+        while(first < digits.length() - 1 && digits.charAt(first) == '0'){
+            first++;
+        }
+        int valueDigits = digits.length() - first;
+        int integerDigits = Math.max(1, valueDigits - decimalDigits);
+        int separators = countGroupingSeparators(integerDigits);
+
+        int length = prefix.length() + integerDigits + separators + (decimalDigits > 0 ? 1 + decimalDigits : 0) + suffix.length();
+        char[] dest = obtainScratchBuffer(length);
+
+        //as in write(), fill from right to left; positions left of the first digit are zero padding
+        int pos = length;
+        int next = digits.length();
+
+        pos -= suffix.length();
+        suffix.getChars(0, suffix.length(), dest, pos);
+
+        if(decimalDigits > 0){
+            for(int i = 0; i < decimalDigits; i++){
+                dest[--pos] = next > first ? (char) (zeroDigit + digits.charAt(--next) - '0') : zeroDigit;
+            }
+            dest[--pos] = decimalSeparator;
+        }
+
+        for(int i = 0; i < integerDigits; i++){
+            if(i > 0 && isGroupingPosition(i)){
+                dest[--pos] = groupingSeparator;
+            }
+            dest[--pos] = next > first ? (char) (zeroDigit + digits.charAt(--next) - '0') : zeroDigit;
+        }
+
+        prefix.getChars(0, prefix.length(), dest, 0);
+
+        return new String(dest, 0, length);
+    }
+
+    /**
+     * Returns the number of integer digits in the given number of characters of the integer part of a formatted
+     * value, counting from its right. The inverse of integerDigits + countGroupingSeparators(integerDigits).
+     */
+    private int integerDigitsIn(int chars){
+        if(primaryGroupingSize <= 0 || chars <= primaryGroupingSize){
+            return Math.max(chars, 0);
+        }
+        //past the primary group, each group is a separator followed (leftwards) by secondaryGroupingSize digits
+        int grouped = chars - primaryGroupingSize;
+        int groups = grouped / (secondaryGroupingSize + 1);
+        int partial = grouped % (secondaryGroupingSize + 1);
+        return primaryGroupingSize + groups * secondaryGroupingSize + Math.max(partial - 1, 0);
+    }
+
+    private int countGroupingSeparators(int integerDigits){
+        if(primaryGroupingSize > 0 && integerDigits > primaryGroupingSize){
+            return 1 + (integerDigits - primaryGroupingSize - 1) / secondaryGroupingSize;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if a grouping separator belongs to the left of the integer digit at the given
+     * position, counting from the right starting at zero.
+     */
+    private boolean isGroupingPosition(int digitIndex){
+        if(primaryGroupingSize <= 0 || digitIndex < primaryGroupingSize){
+            return false;
+        }
+        return (digitIndex - primaryGroupingSize) % secondaryGroupingSize == 0;
+    }
+
+    private char[] obtainScratchBuffer(){
+        return obtainScratchBuffer(maxLength);
+    }
+
+    private static char[] obtainScratchBuffer(int minLength){
+        char[] buffer = scratchBuffer.get();
+        if(buffer == null || buffer.length < minLength){
+            buffer = new char[Math.max(minLength, 64)];
+            scratchBuffer.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static int countDigits(long negatedMagnitude){
+        int digits = 1;
+        while(negatedMagnitude <= -10){
+            negatedMagnitude /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Patterns such as "#,##,##0.00" use a different size for the first group of digits left of the decimal
+     * separator than for the groups that follow it. DecimalFormat only reports the primary size.
+     */
+    private static int findSecondaryGroupingSize(String pattern, int primaryGroupingSize){
+        if(primaryGroupingSize <= 0){
+            return primaryGroupingSize;
+        }
+        int end = pattern.indexOf(';');
+        String positivePattern = end >= 0 ? pattern.substring(0, end) : pattern;
+        int decimal = positivePattern.indexOf('.');
+        String integerPattern = decimal >= 0 ? positivePattern.substring(0, decimal) : positivePattern;
+
+        int last = integerPattern.lastIndexOf(',');
+        if(last <= 0){
+            return primaryGroupingSize;
+        }
+        int previous = integerPattern.lastIndexOf(',', last - 1);
+        if(previous < 0){
+            return primaryGroupingSize;
+        }
+        int secondary = last - previous - 1;
+        return secondary > 0 ? secondary : primaryGroupingSize;
+    }
+
+    private static boolean matchesPrototype(DecimalFormat prototype, int primary, int secondary){
+        DecimalFormat probeFormat = (DecimalFormat) prototype.clone();
+        probeFormat.setMinimumFractionDigits(2);
+        probeFormat.setMaximumFractionDigits(2);
+        CurrencyFormatSpec probeSpec = new CurrencyFormatSpec(probeFormat, 2, primary, secondary, true);
+
+        long[] probes = {0L, 5L, -5L, 123456L, 1234567890123L, -1234567890123L};
+        for(long probe : probes){
+            if(!probeSpec.format(probe).equals(probeFormat.format(probe / 100d))){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,171 @@
+package com.blackcat.currencyedittext;
+
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * An immutable, reusable formatter for a single locale and decimal digit configuration.
+ *
+ * Where the static methods of CurrencyTextFormatter look up the formatting rules for their arguments on every call,
+ * a CurrencyFormatter resolves them once, when it is constructed. It may then be shared by any number of threads,
+ * all of which can format and parse concurrently without locking.
+ *
+ * Output is identical to that of CurrencyTextFormatter.formatText() (and therefore CurrencyEditText) for the
+ * same configuration.
+ */
+public final class CurrencyFormatter {
+
+    private final Locale locale;
+    private final Locale defaultLocale;
+    private final CurrencyFormatSpec spec;
+
+    /**
+     * Creates a formatter for locale, using the number of decimal digits of its currency. Locale.US is used
+     * in the event that locale is not ISO 3166 compliant.
+     */
+    public CurrencyFormatter(Locale locale){
+        this(locale, Locale.US, defaultDecimalDigits(locale, Locale.US));
+    }
+
+    /**
+     * Creates a formatter for the given configuration.
+     * @param locale The locale whose formatting rules should be used.
+     * @param defaultLocale The locale to fall back on if locale is not ISO 3166 compliant.
+     * @param decimalDigits The number of digits to show following the decimal separator.
+     *                      Value must be between 0 and 340 (inclusive).
+     * @throws IllegalArgumentException If decimalDigits does not fall within the range (0, 340) inclusive.
+     */
+    public CurrencyFormatter(Locale locale, Locale defaultLocale, int decimalDigits){
+        if(decimalDigits < 0 || decimalDigits > CurrencyFormatSpec.MAX_FRACTION_DIGITS){
+            throw new IllegalArgumentException("Decimal Digit value must be between 0 and 340");
+        }
+        this.locale = locale;
+        this.defaultLocale = defaultLocale;
+        this.spec = CurrencyTextFormatter.getFormatSpec(locale, defaultLocale, decimalDigits);
+    }
+
+    public Locale getLocale(){
+        return locale;
+    }
+
+    public Locale getDefaultLocale(){
+        return defaultLocale;
+    }
+
+    public int getDecimalDigits(){
+        return spec.getDecimalDigits();
+    }
+
+    /**
+     * The compiled formatting rules used by this formatter.
+     */
+    public CurrencyFormatSpec getSpec(){
+        return spec;
+    }
+
+    /**
+     * Formats a value represented in the currencies lowest denomination, e.g. 1337 becomes "$13.37".
+     */
+    public String format(long rawValue){
+        return CurrencyTextFormatter.formatValue(spec, rawValue);
+    }
+
+    /**
+     * Formats a value of any size represented in the currencies lowest denomination. Every digit is kept, including
+     * those of values beyond the range of a long and those beyond the precision of a double.
+     */
+    public String format(BigInteger rawValue){
+        if(rawValue.bitLength() < 64 && spec.isExact()){
+            return format(rawValue.longValue());
+        }
+        return CurrencyTextFormatter.formatDigits(spec, rawValue.signum() < 0, rawValue.abs().toString());
+    }
+
+    /**
+     * Formats a string of digits representing a value in the currencies lowest denomination. Follows the same
+     * rules as CurrencyTextFormatter.formatText().
+     * @throws IllegalArgumentException If val contains no digits.
+     */
+    public String format(String val){
+        return CurrencyTextFormatter.formatText(val, spec, false);
+    }
+
+    /**
+     * Formats a string of digits the same way as format(String), but reports input which can't be formatted through
+     * the returned result instead of throwing. See CurrencyTextFormatter.tryFormat().
+     */
+    public FormatResult tryFormat(CharSequence val){
+        return CurrencyTextFormatter.tryFormat(val, spec);
+    }
+
+    /**
+     * Formats a value represented in the currencies lowest denomination into dest, without allocating.
+     * See CurrencyFormatSpec.format(long, char[], int).
+     * @return The number of characters written.
+     */
+    public int format(long rawValue, char[] dest, int offset){
+        if(spec.isExact()){
+            return spec.format(rawValue, dest, offset);
+        }
+        String formatted = format(rawValue);
+        formatted.getChars(0, formatted.length(), dest, offset);
+        return formatted.length();
+    }
+
+    /**
+     * Formats a value represented in the currencies lowest denomination onto the end of dest.
+     */
+    public void formatTo(long rawValue, StringBuilder dest){
+        if(spec.isExact()){
+            spec.formatTo(rawValue, dest);
+        }
+        else{
+            dest.append(format(rawValue));
+        }
+    }
+
+    /**
+     * Formats an array of values. See CurrencyTextFormatter.formatAll().
+     * @param executor The executor used to format large arrays in parallel, or null to format every value on
+     *                 the calling thread.
+     */
+    public String[] formatAll(long[] rawValues, Executor executor){
+        return BatchFormatter.formatAll(spec, rawValues, executor);
+    }
+
+    /**
+     * Parses formatted text back into a value in the currencies lowest denomination.
+     * See CurrencyTextFormatter.parse().
+     */
+    public ParseResult parse(CharSequence text){
+        return CurrencyTextFormatter.parse(text, spec);
+    }
+
+    /**
+     * Parses formatted text into a value of any size, in the currencies lowest denomination.
+     * See CurrencyTextFormatter.parseExact().
+     * @return The value, or null if text contains no digits.
+     */
+    public BigInteger parseExact(CharSequence text){
+        return CurrencyTextFormatter.parseExact(text, spec, true);
+    }
+
+    /**
+     * Parses formatted text into a caller-supplied result. See CurrencyTextFormatter.parse().
+     * @return true if a value was parsed.
+     */
+    public boolean parse(CharSequence text, boolean allowNegative, ParseResult result){
+        return CurrencyTextFormatter.parse(text, spec, allowNegative, result);
+    }
+
+    @Override
+    public String toString(){
+        return "CurrencyFormatter[locale=" + locale + ", defaultLocale=" + defaultLocale + ", decimalDigits=" + getDecimalDigits() + "]";
+    }
+
+    private static int defaultDecimalDigits(Locale locale, Locale defaultLocale){
+        //pseudo-currencies such as XXX report -1
+        return Math.max(CurrencyResolver.resolve(locale, defaultLocale).getDefaultFractionDigits(), 0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.blackcat.currencyedittext;
+
+/**
+ * Decides which characters of an edit may enter a CurrencyEditText, before the edit is made. Used by its
+ * InputFilter so that invalid input never reaches the text, rather than being inserted and then undone.
+ */
+final class CurrencyInputRules {
+
+    /** The most significant digits a value may have and still be guaranteed to fit in a long. */
+    static final int MAX_LONG_SAFE_DIGITS = 18;
+
+    private CurrencyInputRules(){}
+
+    /**
+     * Filters the replacement of dest[dstart, dend) by source[start, end), following the contract of
+     * android.text.InputFilter.filter(). Digits are accepted as long as the resulting text has no more than
+     * maxDigits significant digits (leading zeros don't count), minus signs only if allowNegative is set, and
+     * any other character only if spec may write it. The edit is examined in a single pass.
+     * @return null if every character is accepted, otherwise the accepted characters. A prefix of source is
+     *  returned as a subSequence of it, keeping any spans.
+     */
+    static CharSequence filter(CharSequence source, int start, int end, CharSequence dest, int dstart, int dend,
+                               CurrencyFormatSpec spec, boolean allowNegative, int maxDigits){
+        //significant digits left of the edit
+        int significant = 0;
+        for(int i = 0; i < dstart; i++){
+            int digit = spec.digitValue(dest.charAt(i));
+            if(digit > 0 || (digit == 0 && significant > 0)){
+                significant++;
+            }
+        }
+        //digits right of the edit, all of which become significant once a significant digit precedes them
+        int digitsAfter = 0;
+        for(int i = dend; i < dest.length(); i++){
+            if(spec.digitValue(dest.charAt(i)) >= 0){
+                digitsAfter++;
+            }
+        }
+
+        //stays null for as long as every character is accepted
+        StringBuilder accepted = null;
+        int firstRejected = -1;
+        for(int i = start; i < end; i++){
+            char c = source.charAt(i);
+            int digit = spec.digitValue(c);
+            boolean accept;
+            if(digit >= 0){
+                if(digit > 0 || significant > 0){
+                    accept = significant + 1 + digitsAfter <= maxDigits;
+                    if(accept){
+                        significant++;
+                    }
+                }
+                else{
+                    //a leading zero
+                    accept = true;
+                }
+            }
+            else if(spec.isMinusSign(c)){
+                accept = allowNegative;
+            }
+            else{
+                accept = spec.isFormattingChar(c);
+            }
+
+            if(!accept && accepted == null){
+                firstRejected = i;
+                accepted = new StringBuilder(end - start);
+                accepted.append(source, start, i);
+            }
+            else if(accept && accepted != null){
+                accepted.append(c);
+            }
+        }
+
+        if(accepted == null){
+            return null;
+        }
+        if(accepted.length() == firstRejected - start){
+            //only the end of source was cut off
+            return source.subSequence(start, firstRejected);
+        }
+        return accepted.toString();
+    }
+}
@@ -0,0 +1,16 @@
+package com.blackcat.currencyedittext;
+
+/**
+ * Receives the warnings and errors reported by the currency formatting classes, for instance when a locale
+ * is not ISO 3166 compliant and a fallback locale has to be used.
+ *
+ * Install a logger with CurrencyTextFormatter.setLogger(). On Android, CurrencyEditText installs one which
+ * writes to logcat; elsewhere messages go to java.util.logging unless another logger is installed.
+ * Implementations may be called from any thread.
+ */
+public interface CurrencyLogger {
+
+    void warn(String tag, String message);
+
+    void error(String tag, String message);
+}
@@ -0,0 +1,96 @@
+package com.blackcat.currencyedittext;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A CurrencyMetricsListener which aggregates measurements into latency histograms and counters, ready to be
+ * read periodically and exported to a monitoring system. For example:
+ *
+ * CurrencyMetrics metrics = new CurrencyMetrics();
+ * CurrencyTextFormatter.setMetricsListener(metrics);
+ * ...
+ * long p99 = metrics.getKeystrokeLatency().getPercentileNanos(99);
+ *
+ * All methods may be called from any thread.
+ */
+public final class CurrencyMetrics implements CurrencyMetricsListener {
+
+    private final LatencyHistogram keystrokeLatency = new LatencyHistogram();
+    private final LatencyHistogram formatLatency = new LatencyHistogram();
+    private final AtomicLong localeFallbackCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    @Override
+    public void onKeystroke(long durationNanos){
+        keystrokeLatency.record(durationNanos);
+    }
+
+    @Override
+    public void onFormat(long durationNanos){
+        formatLatency.record(durationNanos);
+    }
+
+    @Override
+    public void onLocaleFallback(Locale locale, Locale fallbackLocale){
+        localeFallbackCount.incrementAndGet();
+    }
+
+    @Override
+    public void onError(RuntimeException e){
+        errorCount.incrementAndGet();
+    }
+
+    /**
+     * The time taken by CurrencyEditText to process each edit.
+     */
+    public LatencyHistogram getKeystrokeLatency(){
+        return keystrokeLatency;
+    }
+
+    /**
+     * The time taken to format each single value. Its count is the number of format calls.
+     */
+    public LatencyHistogram getFormatLatency(){
+        return formatLatency;
+    }
+
+    public long getLocaleFallbackCount(){
+        return localeFallbackCount.get();
+    }
+
+    public long getErrorCount(){
+        return errorCount.get();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the cache of compiled formatting rules.
+     */
+    public CacheStats getFormatterCacheStats(){
+        return CurrencyTextFormatter.getFormatterCacheStats();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the cache of formatted values.
+     */
+    public CacheStats getValueCacheStats(){
+        return CurrencyTextFormatter.getValueCacheStats();
+    }
+
+    /**
+     * Discards every measurement taken so far. Cache statistics are not affected.
+     */
+    public void reset(){
+        keystrokeLatency.reset();
+        formatLatency.reset();
+        localeFallbackCount.set(0);
+        errorCount.set(0);
+    }
+
+    @Override
+    public String toString(){
+        return "CurrencyMetrics[keystrokes=" + keystrokeLatency + ", formats=" + formatLatency
+                + ", localeFallbacks=" + getLocaleFallbackCount() + ", errors=" + getErrorCount()
+                + ", formatterCache=" + getFormatterCacheStats() + ", valueCache=" + getValueCacheStats() + "]";
+    }
+}
@@ -0,0 +1,37 @@
+package com.blackcat.currencyedittext;
+
+import java.util.Locale;
+
+/**
+ * Receives performance and health measurements from the currency formatting classes and CurrencyEditText, for
+ * forwarding to a monitoring system.
+ *
+ * Install a listener with CurrencyTextFormatter.setMetricsListener(). While none is installed, no measurements
+ * are taken. CurrencyMetrics is a ready-made implementation which aggregates them into histograms and counters.
+ *
+ * Implementations may be called from any thread, and are called on the thread doing the work being measured,
+ * so they should return quickly.
+ */
+public interface CurrencyMetricsListener {
+
+    /**
+     * Called after a CurrencyEditText has processed an edit, with the time taken by its text watcher.
+     */
+    void onKeystroke(long durationNanos);
+
+    /**
+     * Called after a single value has been formatted, by CurrencyTextFormatter.formatText(), CurrencyFormatter.format()
+     * or CurrencyEditText.formatCurrency(), with the time taken.
+     */
+    void onFormat(long durationNanos);
+
+    /**
+     * Called when locale could not be used, and fallbackLocale was used in its place.
+     */
+    void onLocaleFallback(Locale locale, Locale fallbackLocale);
+
+    /**
+     * Called when an exception is about to be thrown while formatting or processing an edit.
+     */
+    void onError(RuntimeException e);
+}
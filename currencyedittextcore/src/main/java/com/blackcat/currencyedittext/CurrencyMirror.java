@@ -0,0 +1,169 @@
+package com.blackcat.currencyedittext;
+
+import java.math.BigInteger;
+
+/**
+ * Converts amounts into another currency at a fixed exchange rate and formats them, e.g. to show the amount being
+ * entered into a CurrencyEditText in a few other currencies underneath it. See CurrencyEditText.addMirror().
+ *
+ * The rate is given in fixed point: rate / 10^rateScale units of the target currency for each unit of the source
+ * currency. For example, a rate of 9213 with a scale of 4 converts $1.00 into 0.92 EUR. Conversions are carried out
+ * on the raw values of both currencies, without floating point, and rounded half away from zero to the target's
+ * decimal digits. Values which fit in a long are converted without allocating.
+ *
+ * Instances are immutable and may be shared between threads.
+ */
+public final class CurrencyMirror {
+
+    /** The largest supported rate scale. */
+    public static final int MAX_RATE_SCALE = 18;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+            10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+            1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L
+    };
+
+    private final CurrencyFormatter formatter;
+    private final long rate;
+    private final int rateScale;
+
+    /**
+     * @param formatter The formatter for the target currency. Its decimal digits determine the precision of converted values.
+     * @param rate The exchange rate, in units of the target currency per unit of the source currency, times 10^rateScale.
+     * @param rateScale The number of decimal places in rate, between 0 and MAX_RATE_SCALE (inclusive).
+     * @throws IllegalArgumentException If rate is negative or rateScale is out of range.
+     */
+    public CurrencyMirror(CurrencyFormatter formatter, long rate, int rateScale){
+        if(formatter == null){
+            throw new IllegalArgumentException("Formatter must not be null");
+        }
+        if(rate < 0){
+            throw new IllegalArgumentException("Rate must not be negative");
+        }
+        if(rateScale < 0 || rateScale > MAX_RATE_SCALE){
+            throw new IllegalArgumentException("Rate scale must be between 0 and " + MAX_RATE_SCALE);
+        }
+        this.formatter = formatter;
+        this.rate = rate;
+        this.rateScale = rateScale;
+    }
+
+    public CurrencyFormatter getFormatter(){
+        return formatter;
+    }
+
+    public long getRate(){
+        return rate;
+    }
+
+    public int getRateScale(){
+        return rateScale;
+    }
+
+    /**
+     * Returns a mirror into the same currency at a different rate.
+     */
+    public CurrencyMirror withRate(long rate, int rateScale){
+        return new CurrencyMirror(formatter, rate, rateScale);
+    }
+
+    /**
+     * Converts a raw value of the source currency into a raw value of the target currency.
+     * @param sourceDecimalDigits The number of decimal digits of rawValue, e.g. CurrencyEditText.getDecimalDigits().
+     * @throws ArithmeticException If the converted value does not fit in a long.
+     */
+    public long convert(long rawValue, int sourceDecimalDigits){
+        int exponent = exponent(sourceDecimalDigits);
+        if(fitsInLong(rawValue, exponent)){
+            return convertLong(rawValue, exponent);
+        }
+        BigInteger converted = convert(BigInteger.valueOf(rawValue), sourceDecimalDigits);
+        if(converted.bitLength() >= 64){
+            throw new ArithmeticException("Converted value does not fit in a long");
+        }
+        return converted.longValue();
+    }
+
+    /**
+     * Converts a raw value of the source currency, of any size, into a raw value of the target currency.
+     * @param sourceDecimalDigits The number of decimal digits of rawValue, e.g. CurrencyEditText.getDecimalDigits().
+     */
+    public BigInteger convert(BigInteger rawValue, int sourceDecimalDigits){
+        int exponent = exponent(sourceDecimalDigits);
+        BigInteger product = rawValue.multiply(BigInteger.valueOf(rate));
+        if(exponent >= 0){
+            return product.multiply(BigInteger.TEN.pow(exponent));
+        }
+        BigInteger divisor = BigInteger.TEN.pow(-exponent);
+        BigInteger[] quotientAndRemainder = product.divideAndRemainder(divisor);
+        if(quotientAndRemainder[1].abs().shiftLeft(1).compareTo(divisor) >= 0){
+            return quotientAndRemainder[0].add(BigInteger.valueOf(product.signum()));
+        }
+        return quotientAndRemainder[0];
+    }
+
+    /**
+     * Converts a raw value of the source currency and formats it with the target currency's formatter.
+     * @param sourceDecimalDigits The number of decimal digits of rawValue, e.g. CurrencyEditText.getDecimalDigits().
+     */
+    public String format(long rawValue, int sourceDecimalDigits){
+        int exponent = exponent(sourceDecimalDigits);
+        if(fitsInLong(rawValue, exponent)){
+            return formatter.format(convertLong(rawValue, exponent));
+        }
+        return formatter.format(convert(BigInteger.valueOf(rawValue), sourceDecimalDigits));
+    }
+
+    /**
+     * Converts a raw value of the source currency, of any size, and formats it with the target currency's formatter.
+     * @param sourceDecimalDigits The number of decimal digits of rawValue, e.g. CurrencyEditText.getDecimalDigits().
+     */
+    public String format(BigInteger rawValue, int sourceDecimalDigits){
+        return formatter.format(convert(rawValue, sourceDecimalDigits));
+    }
+
+    @Override
+    public String toString(){
+        return "CurrencyMirror[rate=" + rate + "e-" + rateScale + ", formatter=" + formatter + "]";
+    }
+
+    /**
+     * The power of ten the product of a raw value and the rate must be scaled by to become a raw value of the target.
+     */
+    private int exponent(int sourceDecimalDigits){
+        return formatter.getDecimalDigits() - rateScale - sourceDecimalDigits;
+    }
+
+    /**
+     * Whether rawValue can be converted with long arithmetic alone.
+     */
+    private boolean fitsInLong(long rawValue, int exponent){
+        if(exponent <= -POWERS_OF_TEN.length || exponent >= POWERS_OF_TEN.length || rawValue == Long.MIN_VALUE){
+            return false;
+        }
+        long multiplier = rate;
+        if(exponent > 0){
+            if(rate > Long.MAX_VALUE / POWERS_OF_TEN[exponent]){
+                return false;
+            }
+            multiplier = rate * POWERS_OF_TEN[exponent];
+        }
+        return multiplier == 0 || Math.abs(rawValue) <= Long.MAX_VALUE / multiplier;
+    }
+
+    private long convertLong(long rawValue, int exponent){
+        if(exponent >= 0){
+            return rawValue * rate * POWERS_OF_TEN[exponent];
+        }
+        long product = rawValue * rate;
+        long divisor = POWERS_OF_TEN[-exponent];
+        long quotient = product / divisor;
+        long remainder = product % divisor;
+        //remainder is smaller than divisor, which is at most 10^18, so doubling it can't overflow
+        if(Math.abs(remainder) * 2 >= divisor){
+            quotient += product < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,72 @@
+package com.blackcat.currencyedittext;
+
+import java.util.Currency;
+import java.util.Locale;
+
+/**
+ * Resolves the currency of a locale, remembering the outcome for each locale, failures included.
+ *
+ * Currency.getInstance() throws for locales which are not ISO 3166 compliant, such as those without a country.
+ * Since the same locale is resolved over and over (on every refresh of a view, or every call to formatText()),
+ * each locale is only looked up once, and a failure is only logged once, rather than paying for an exception
+ * and a log message every time.
+ */
+final class CurrencyResolver {
+
+    private static final int CACHE_SIZE = 32;
+
+    //the outcome of Currency.getInstance() for each locale; a null currency records a failure
+    private static final BoundedCache<Locale, Resolution> resolutions = new BoundedCache<>(CACHE_SIZE);
+
+    private CurrencyResolver(){}
+
+    /**
+     * Returns the currency of locale, or null if it has none. Never throws.
+     */
+    static Currency currencyOf(Locale locale){
+        Resolution resolution = resolutions.get(locale);
+        if(resolution == null){
+            Currency currency;
+            try{
+                currency = Currency.getInstance(locale);
+            }
+            catch(Exception e){
+                CurrencyTextFormatter.getLogger().warn("CurrencyResolver", "No currency available for locale: " + locale);
+                currency = null;
+            }
+            resolution = new Resolution(currency);
+            resolutions.put(locale, resolution);
+        }
+        return resolution.currency;
+    }
+
+    /**
+     * Returns the currency of locale, or if it has none, that of defaultLocale, or failing that, USD.
+     * Every fallback is reported to the metrics listener.
+     */
+    static Currency resolve(Locale locale, Locale defaultLocale){
+        Currency currency = currencyOf(locale);
+        if(currency != null){
+            return currency;
+        }
+        CurrencyTextFormatter.reportLocaleFallback(locale, defaultLocale);
+        currency = currencyOf(defaultLocale);
+        if(currency != null){
+            return currency;
+        }
+        CurrencyTextFormatter.reportLocaleFallback(defaultLocale, Locale.US);
+        return Currency.getInstance(Locale.US);
+    }
+
+    static void clear(){
+        resolutions.clear();
+    }
+
+    private static final class Resolution {
+        final Currency currency;
+
+        Resolution(Currency currency){
+            this.currency = currency;
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package com.blackcat.currencyedittext;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+public final class CurrencyTextFormatter {
+
+    private static final int DEFAULT_FORMATTER_CACHE_SIZE = 32;
+
+    //Compiled formatting rules, keyed by the locale configuration and number of decimal digits they were built for.
+    private static final BoundedCache<FormatterKey, CurrencyFormatSpec> formatterCache = new BoundedCache<>(DEFAULT_FORMATTER_CACHE_SIZE);
+
+    //Formatted values, keyed by the spec and value they were formatted from. Disabled (null) until a size is set.
+    private static volatile BoundedCache<ValueKey, String> valueCache;
+
+    private static final CurrencyLogger DEFAULT_LOGGER = new CurrencyLogger() {
+        @Override
+        public void warn(String tag, String message) {
+            Logger.getLogger(tag).warning(message);
+        }
+
+        @Override
+        public void error(String tag, String message) {
+            Logger.getLogger(tag).severe(message);
+        }
+    };
+
+    private static volatile CurrencyLogger logger = DEFAULT_LOGGER;
+
+    //null unless measurements were requested; checked once per measured operation
+    private static volatile CurrencyMetricsListener metricsListener;
+
+    private CurrencyTextFormatter(){}
+
+    /**
+     * Sets the logger which receives the warnings and errors reported while formatting, such as locale fallbacks.
+     * @param newLogger The logger to use, or null to restore the default java.util.logging based logger.
+     */
+    public static synchronized void setLogger(CurrencyLogger newLogger){
+        logger = newLogger != null ? newLogger : DEFAULT_LOGGER;
+    }
+
+    /**
+     * Installs newLogger, unless a logger other than the default has been installed already. Lets CurrencyEditText
+     * route messages to logcat without replacing a logger the application installed before the view was loaded.
+     */
+    static synchronized void setLoggerIfDefault(CurrencyLogger newLogger){
+        if(logger == DEFAULT_LOGGER){
+            logger = newLogger;
+        }
+    }
+
+    /**
+     * Returns the logger currently receiving the warnings and errors reported while formatting.
+     */
+    public static CurrencyLogger getLogger(){
+        return logger;
+    }
+
+    /**
+     * Installs a listener to receive latency measurements, locale fallbacks and errors from the formatting classes
+     * and every CurrencyEditText. While no listener is installed, which is the default, nothing is measured.
+     * @param listener The listener to install, such as a CurrencyMetrics, or null to stop measuring.
+     */
+    public static void setMetricsListener(CurrencyMetricsListener listener){
+        metricsListener = listener;
+    }
+
+    /**
+     * Returns the installed metrics listener, or null if there is none.
+     */
+    public static CurrencyMetricsListener getMetricsListener(){
+        return metricsListener;
+    }
+
+    static void reportLocaleFallback(Locale locale, Locale fallbackLocale){
+        CurrencyMetricsListener metrics = metricsListener;
+        if(metrics != null){
+            metrics.onLocaleFallback(locale, fallbackLocale);
+        }
+    }
+
+    static void reportError(RuntimeException e){
+        CurrencyMetricsListener metrics = metricsListener;
+        if(metrics != null){
+            metrics.onError(e);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the hit/miss statistics of the cache of locale-specific formatters
+     * used by formatText().
+     */
+    public static CacheStats getFormatterCacheStats(){
+        return formatterCache.stats();
+    }
+
+    /**
+     * Sets the maximum number of locale/decimal digit combinations whose formatters will be cached.
+     * Defaults to 32.
+     * @param maxSize The maximum number of cached formatters. Must be at least 1.
+     * @throws IllegalArgumentException If maxSize is less than 1.
+     */
+    public static void setFormatterCacheSize(int maxSize){
+        formatterCache.resize(maxSize);
+    }
+
+    /**
+     * Removes all cached formatters, along with any values cached with them, the configurations shared by
+     * CurrencyEditText views and the remembered currency of each locale. Subsequent calls to formatText() will rebuild them as needed.
+     */
+    public static void clearFormatterCache(){
+        formatterCache.clear();
+        CurrencyConfig.clear();
+        CurrencyResolver.clear();
+        clearValueCache();
+    }
+
+    /**
+     * Enables, resizes or disables the cache of formatted values.
+     *
+     * When enabled, the text produced for each value by formatText() and CurrencyEditText.formatCurrency() is
+     * remembered, keyed by the value and the locale and decimal digit configuration it was formatted with. Repeated
+     * requests for the same amount, such as zero, round prices or recurring bills shown throughout an app, are then
+     * answered without formatting.
+     *
+     * The cache is shared and locked on every lookup, so only those calls use it. CurrencyFormatter (and the mirrors
+     * and values a CurrencyEditText displays with it) never takes a lock and always formats, as do tryFormat(), bulk
+     * calls such as formatAll() and the text typed into a CurrencyEditText.
+     *
+     * The cache is disabled by default. Use getValueCacheStats() to weigh its hit rate against its size.
+     * @param maxSize The maximum number of formatted values to hold, or 0 to disable the cache and release its entries.
+     * @throws IllegalArgumentException If maxSize is negative.
+     */
+    public static void setValueCacheSize(int maxSize){
+        if(maxSize < 0){
+            throw new IllegalArgumentException("Cache size must not be negative");
+        }
+        synchronized(CurrencyTextFormatter.class){
+            if(maxSize == 0){
+                valueCache = null;
+            }
+            else if(valueCache == null){
+                valueCache = new BoundedCache<>(maxSize);
+            }
+            else{
+                valueCache.resize(maxSize);
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the hit/miss/eviction statistics of the cache of formatted values. All counts are 0
+     * while the cache is disabled.
+     */
+    public static CacheStats getValueCacheStats(){
+        BoundedCache<ValueKey, String> cache = valueCache;
+        return cache != null ? cache.stats() : new CacheStats(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Removes all cached formatted values, leaving the cache enabled.
+     */
+    public static void clearValueCache(){
+        BoundedCache<ValueKey, String> cache = valueCache;
+        if(cache != null){
+            cache.clear();
+        }
+    }
+
+    public static String formatText(String val, Locale locale){
+        return formatText(val, locale, Locale.US, null);
+    }
+
+    public static String formatText(String val, Locale locale, Locale defaultLocale){
+        return formatText(val, locale, defaultLocale, null);
+    }
+
+    public static String formatText(String val, Locale locale, Locale defaultLocale, Integer decimalDigits){
+        //special case for the start of a negative number
+        if(val.equals("-")) return val;
+
+        return formatText(val, getFormatSpec(locale, defaultLocale, resolveDecimalDigits(locale, defaultLocale, decimalDigits)), true);
+    }
+
+    /**
+     * Formats val the same way as formatText(), but rather than throwing if val can't be formatted, reports it
+     * through the returned result. Locales which are not ISO 3166 compliant fall back to defaultLocale, then
+     * Locale.US, without throwing either.
+     * @param decimalDigits The number of digits to show following the decimal separator, or null to use the number
+     *                      used by the currency of locale.
+     */
+    public static FormatResult tryFormat(CharSequence val, Locale locale, Locale defaultLocale, Integer decimalDigits){
+        return tryFormat(val, getFormatSpec(locale, defaultLocale, resolveDecimalDigits(locale, defaultLocale, decimalDigits)));
+    }
+
+    static FormatResult tryFormat(CharSequence val, CurrencyFormatSpec spec){
+        ParseResult parsed = new ParseResult();
+        String text = formatParsed(val, spec, parsed, false);
+        return new FormatResult(text, parsed);
+    }
+
+    private static int resolveDecimalDigits(Locale locale, Locale defaultLocale, Integer decimalDigits){
+        if(decimalDigits != null){
+            return decimalDigits;
+        }
+        //pseudo-currencies such as XXX report -1
+        return Math.max(CurrencyResolver.resolve(locale, defaultLocale).getDefaultFractionDigits(), 0);
+    }
+
+    /**
+     * Formats val, a string of digits in the currencies lowest denomination, according to spec.
+     * See formatText(String, Locale, Locale, Integer).
+     * @param cached Whether to consult the cache of formatted values, if it is enabled.
+     */
+    static String formatText(String val, CurrencyFormatSpec spec, boolean cached){
+        //special case for the start of a negative number
+        if(val.equals("-")) return val;
+
+        String result = formatParsed(val, spec, new ParseResult(), cached);
+
+        //if there are no digits, that means we were handed an empty string.
+        if(result == null){
+            IllegalArgumentException e = new IllegalArgumentException("Invalid amount of digits found (either zero or too many) in argument val");
+            reportError(e);
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Parses val into parsed, then formats it.
+     * @param cached Whether to consult the cache of formatted values, if it is enabled.
+     * @return The formatted text, or null if val has no digits.
+     */
+    private static String formatParsed(CharSequence val, CurrencyFormatSpec spec, ParseResult parsed, boolean cached){
+        CurrencyMetricsListener metrics = metricsListener;
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        //Scan the value once, retaining information about its negativity and accumulating its digits.
+        parse(val, spec, true, parsed);
+
+        if(parsed.getDigitCount() == 0){
+            //special case for the start of a negative number
+            return "-".contentEquals(val) ? "-" : null;
+        }
+        String result;
+        if(parsed.isOverflow()){
+            result = format(parsed, spec, val);
+        }
+        else if(cached){
+            result = formatCached(spec, parsed.getValue(), parsed.isNegative());
+        }
+        else{
+            result = formatUncached(spec, parsed.getValue(), parsed.isNegative());
+        }
+
+        if(metrics != null){
+            metrics.onFormat(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Parses text produced by formatText() (or typed by a user) back into a value in the currencies lowest
+     * denomination, e.g. "$13.37" becomes 1337.
+     *
+     * The text is scanned once, without creating any intermediate strings. Every digit is taken as part of
+     * the value; any minus sign marks the value as negative. All other characters are ignored, though those
+     * that are not part of spec's formatting rules are counted as invalid. Problems are reported through the
+     * returned result rather than by throwing.
+     * @param text The text to parse. Any CharSequence, such as an Editable, may be used.
+     * @param spec The formatting rules the text was written with. Used to recognize the digits and symbols
+     *             of the locale.
+     */
+    public static ParseResult parse(CharSequence text, CurrencyFormatSpec spec){
+        ParseResult result = new ParseResult();
+        parse(text, spec, true, result);
+        return result;
+    }
+
+    /**
+     * Parses text into a caller-supplied result, allowing the result to be reused between calls.
+     * See parse(CharSequence, CurrencyFormatSpec) for a description of the parsing rules.
+     * @param allowNegative If false, minus signs are ignored and the parsed value is never negative.
+     * @param result Receives the outcome of the parse.
+     * @return true if a value was parsed, i.e. the text held at least one digit and the value fits in a long.
+     */
+    public static boolean parse(CharSequence text, CurrencyFormatSpec spec, boolean allowNegative, ParseResult result){
+        boolean isNegative = false;
+        boolean overflow = false;
+        int digitCount = 0;
+        int invalidCharCount = 0;
+        //accumulate the magnitude as a negative number so that Long.MIN_VALUE can be represented.
+        long negatedMagnitude = 0;
+
+        int length = text.length();
+        for(int i = 0; i < length; i++){
+            char c = text.charAt(i);
+            int digit = spec.digitValue(c);
+            if(digit >= 0){
+                digitCount++;
+                if(overflow || negatedMagnitude < Long.MIN_VALUE / 10 || (negatedMagnitude == Long.MIN_VALUE / 10 && digit > -(Long.MIN_VALUE % 10))){
+                    overflow = true;
+                }
+                else{
+                    negatedMagnitude = negatedMagnitude * 10 - digit;
+                }
+            }
+            else if(spec.isMinusSign(c)){
+                isNegative |= allowNegative;
+            }
+            else if(!spec.isFormattingChar(c)){
+                invalidCharCount++;
+            }
+        }
+
+        long value = 0;
+        if(!overflow && digitCount > 0){
+            if(isNegative){
+                value = negatedMagnitude;
+            }
+            else if(negatedMagnitude == Long.MIN_VALUE){
+                overflow = true;
+            }
+            else{
+                value = -negatedMagnitude;
+            }
+        }
+
+        result.set(value, isNegative, overflow, digitCount, invalidCharCount);
+        return result.hasValue();
+    }
+
+    /**
+     * Parses text into a value of any size, in the currencies lowest denomination. Follows the same rules as
+     * parse(), but never overflows.
+     * @return The value, or null if text contains no digits.
+     */
+    public static BigInteger parseExact(CharSequence text, CurrencyFormatSpec spec, boolean allowNegative){
+        StringBuilder digits = new StringBuilder(text.length());
+        boolean isNegative = collectDigits(text, spec, allowNegative, digits);
+        if(digits.length() == 0){
+            return null;
+        }
+        BigInteger value = new BigInteger(digits.toString());
+        return isNegative ? value.negate() : value;
+    }
+
+    /**
+     * Appends the digits of text to dest as ASCII digits, whatever digits the locale uses.
+     * @return true if text holds a minus sign and allowNegative is set.
+     */
+    static boolean collectDigits(CharSequence text, CurrencyFormatSpec spec, boolean allowNegative, StringBuilder dest){
+        boolean isNegative = false;
+        int length = text.length();
+        for(int i = 0; i < length; i++){
+            char c = text.charAt(i);
+            int digit = spec.digitValue(c);
+            if(digit >= 0){
+                dest.append((char) ('0' + digit));
+            }
+            else if(spec.isMinusSign(c)){
+                isNegative |= allowNegative;
+            }
+        }
+        return isNegative;
+    }
+
+    /**
+     * Formats a value of any size exactly, given as its sign and the ASCII digits of its magnitude. Specs which
+     * are not exact format through BigDecimal rather than double.
+     */
+    static String formatDigits(CurrencyFormatSpec spec, boolean isNegative, CharSequence digits){
+        if(spec.isExact()){
+            return spec.formatDigits(isNegative, digits);
+        }
+        return formatWithDecimalFormat(new BigDecimal(new BigInteger(digits.toString()), spec.getDecimalDigits()), isNegative, spec);
+    }
+
+    /**
+     * Formats a value held in a long according to spec without losing digits, even if spec is not exact.
+     * The sign is given separately so that a negative zero can be formatted.
+     */
+    static String formatValueExact(CurrencyFormatSpec spec, long value, boolean isNegative){
+        //every spec formats longs without losing digits
+        return formatUncached(spec, value, isNegative);
+    }
+
+    /**
+     * Formats a parsed value according to spec. The sign is taken from the parse result rather than the value,
+     * so that a negative zero is formatted the way DecimalFormat formats -0.0.
+     * @param source The text which was parsed, used if the value is too large to be held in a long.
+     */
+    static String format(ParseResult parsed, CurrencyFormatSpec spec, CharSequence source){
+        if(parsed.isOverflow()){
+            //the digits are kept as they are, without converting them to a number
+            StringBuilder digits = new StringBuilder(source.length());
+            collectDigits(source, spec, true, digits);
+            return formatDigits(spec, parsed.isNegative(), digits);
+        }
+        return formatUncached(spec, parsed.getValue(), parsed.isNegative());
+    }
+
+    /**
+     * Formats an array of values in one call, resolving the locale and formatting rules only once.
+     * @param values The values to format, each represented in the currencies lowest denomination (e.g. pennies).
+     * @param locale The locale whose formatting rules should be used.
+     * @param defaultLocale The locale to fall back on if locale is not ISO 3166 compliant.
+     * @param decimalDigits The number of digits to show following the decimal separator.
+     * @return The formatted values, in the same order as values.
+     */
+    public static String[] formatAll(long[] values, Locale locale, Locale defaultLocale, int decimalDigits){
+        return formatAll(values, locale, defaultLocale, decimalDigits, null);
+    }
+
+    /**
+     * Formats an array of values in one call, resolving the locale and formatting rules only once.
+     *
+     * Large arrays are split into one chunk per available core. The calling thread formats the first chunk,
+     * while the remaining chunks are handed to executor; the call returns once every chunk is done.
+     * @param executor The executor used to format chunks in parallel, or null to format every value on the
+     *                 calling thread.
+     */
+    public static String[] formatAll(long[] values, Locale locale, Locale defaultLocale, int decimalDigits, Executor executor){
+        return BatchFormatter.formatAll(getFormatSpec(locale, defaultLocale, decimalDigits), values, executor);
+    }
+
+    /**
+     * Formats an array of values into a single packed char buffer, avoiding the creation of a String
+     * for each value. See formatAll() for a description of the parameters.
+     */
+    public static FormattedBatch formatPacked(long[] values, Locale locale, Locale defaultLocale, int decimalDigits, Executor executor){
+        return BatchFormatter.formatPacked(getFormatSpec(locale, defaultLocale, decimalDigits), values, executor);
+    }
+
+    /**
+     * Returns the compiled formatting rules for the given configuration. If locale fails to provide a
+     * currency formatter, defaultLocale will be used, followed by Locale.US.
+     *
+     * The returned spec is cached, so repeated calls for the same configuration are cheap.
+     *
+     * @param locale The locale whose formatting rules should be used.
+     * @param defaultLocale The locale to fall back on if locale is not ISO 3166 compliant.
+     * @param decimalDigits The number of digits to show following the decimal separator.
+     */
+    public static CurrencyFormatSpec getFormatSpec(Locale locale, Locale defaultLocale, int decimalDigits){
+        FormatterKey key = new FormatterKey(locale, defaultLocale, decimalDigits);
+        CurrencyFormatSpec spec = formatterCache.get(key);
+        if(spec == null){
+            DecimalFormat prototype = createFormatter(locale, defaultLocale);
+            prototype.setMinimumFractionDigits(decimalDigits);
+            spec = CurrencyFormatSpec.compile(prototype, decimalDigits);
+            formatterCache.put(key, spec);
+        }
+        return spec;
+    }
+
+    /**
+     * Formats a value held in the currencies lowest denomination according to spec, without locking.
+     */
+    static String formatValue(CurrencyFormatSpec spec, long value){
+        return formatValue(spec, value, false);
+    }
+
+    /**
+     * Formats a value held in the currencies lowest denomination according to spec, consulting the cache of
+     * formatted values if it is enabled.
+     */
+    static String formatValueCached(CurrencyFormatSpec spec, long value){
+        return formatValue(spec, value, true);
+    }
+
+    private static String formatValue(CurrencyFormatSpec spec, long value, boolean cached){
+        CurrencyMetricsListener metrics = metricsListener;
+        long start = metrics != null ? System.nanoTime() : 0;
+        String result = cached ? formatCached(spec, value, value < 0) : formatUncached(spec, value, value < 0);
+        if(metrics != null){
+            metrics.onFormat(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Formats a value held in the currencies lowest denomination according to spec. The sign is given separately
+     * so that a negative zero can be formatted.
+     */
+    static String formatUncached(CurrencyFormatSpec spec, long value, boolean isNegative){
+        if(spec.isExact()){
+            return spec.format(isNegative, value <= 0 ? value : -value);
+        }
+        return formatWithDecimalFormat(BigDecimal.valueOf(value, spec.getDecimalDigits()), isNegative, spec);
+    }
+
+    private static String formatCached(CurrencyFormatSpec spec, long value, boolean isNegative){
+        BoundedCache<ValueKey, String> cache = valueCache;
+        if(cache == null){
+            return formatUncached(spec, value, isNegative);
+        }
+        ValueKey key = new ValueKey(spec, value, isNegative);
+        String formatted = cache.get(key);
+        if(formatted == null){
+            formatted = formatUncached(spec, value, isNegative);
+            cache.put(key, formatted);
+        }
+        return formatted;
+    }
+
+    /**
+     * Formats value with the DecimalFormat of spec, through BigDecimal so that no digit is lost. Used for values
+     * too large to be held in a long, and for locales whose rules can't be compiled into a CurrencyFormatSpec.
+     * @param isNegative The sign to format, which replaces that of value, so that a negative zero can be formatted.
+     */
+    private static String formatWithDecimalFormat(BigDecimal value, boolean isNegative, CurrencyFormatSpec spec){
+        DecimalFormat format = spec.threadDecimalFormat();
+        if(value.signum() == 0){
+            //BigDecimal has no negative zero; DecimalFormat writes one for -0.0
+            return format.format(isNegative ? -0.0d : 0.0d);
+        }
+        return format.format(isNegative == (value.signum() < 0) ? value : value.negate());
+    }
+
+    private static DecimalFormat createFormatter(Locale locale, Locale defaultLocale){
+        DecimalFormat currencyFormatter;
+        try {
+            currencyFormatter = (DecimalFormat) DecimalFormat.getCurrencyInstance(locale);
+        } catch (Exception e) {
+            try {
+                logger.error("CurrencyTextFormatter", "Error detected for locale: " + locale + ", falling back to default value: " + defaultLocale);
+                reportLocaleFallback(locale, defaultLocale);
+                currencyFormatter = (DecimalFormat) DecimalFormat.getCurrencyInstance(defaultLocale);
+            }
+            catch(Exception e1){
+                logger.error("CurrencyTextFormatter", "Error detected for defaultLocale: " + defaultLocale + ", falling back to USD.");
+                reportLocaleFallback(defaultLocale, Locale.US);
+                currencyFormatter = (DecimalFormat) DecimalFormat.getCurrencyInstance(Locale.US);
+            }
+        }
+        return currencyFormatter;
+    }
+
+    static final class FormatterKey {
+        private final Locale locale;
+        private final Locale defaultLocale;
+        private final int decimalDigits;
+
+        FormatterKey(Locale locale, Locale defaultLocale, int decimalDigits){
+            this.locale = locale;
+            this.defaultLocale = defaultLocale;
+            this.decimalDigits = decimalDigits;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this == o) return true;
+            if(!(o instanceof FormatterKey)) return false;
+            FormatterKey other = (FormatterKey) o;
+            return decimalDigits == other.decimalDigits
+                    && (locale == null ? other.locale == null : locale.equals(other.locale))
+                    && (defaultLocale == null ? other.defaultLocale == null : defaultLocale.equals(other.defaultLocale));
+        }
+
+        @Override
+        public int hashCode(){
+            int result = locale != null ? locale.hashCode() : 0;
+            result = 31 * result + (defaultLocale != null ? defaultLocale.hashCode() : 0);
+            result = 31 * result + decimalDigits;
+            return result;
+        }
+    }
+
+    private static final class ValueKey {
+        //specs are shared through formatterCache, so a spec identifies its locale and decimal digit configuration
+        private final CurrencyFormatSpec spec;
+        private final long value;
+        private final boolean isNegative;
+
+        ValueKey(CurrencyFormatSpec spec, long value, boolean isNegative){
+            this.spec = spec;
+            this.value = value;
+            this.isNegative = isNegative;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this == o) return true;
+            if(!(o instanceof ValueKey)) return false;
+            ValueKey other = (ValueKey) o;
+            return spec == other.spec && value == other.value && isNegative == other.isNegative;
+        }
+
+        @Override
+        public int hashCode(){
+            int result = System.identityHashCode(spec);
+            result = 31 * result + (int) (value ^ (value >>> 32));
+            result = 31 * result + (isNegative ? 1 : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.blackcat.currencyedittext;
+
+/**
+ * The outcome of CurrencyTextFormatter.tryFormat(): the formatted text, or the reason there is none, along with
+ * the value which was parsed from the input.
+ *
+ * Unlike formatText(), which throws an IllegalArgumentException for input without any digits, tryFormat() reports
+ * it through this object, so that invalid input can be handled without the cost of an exception.
+ */
+public final class FormatResult {
+
+    private final String text;
+    private final ParseResult parseResult;
+
+    FormatResult(String text, ParseResult parseResult){
+        this.text = text;
+        this.parseResult = parseResult;
+    }
+
+    /**
+     * Returns true if the input was formatted. Input without any digits can't be, with the exception of a lone
+     * minus sign, the start of a negative number, which is formatted as itself.
+     */
+    public boolean isFormatted(){
+        return text != null;
+    }
+
+    /**
+     * The formatted text, or null if the input could not be formatted.
+     */
+    public String getText(){
+        return text;
+    }
+
+    /**
+     * The value parsed from the input, along with any problems found while parsing it.
+     */
+    public ParseResult getParseResult(){
+        return parseResult;
+    }
+
+    @Override
+    public String toString(){
+        return "FormatResult[text=" + text + ", " + parseResult + "]";
+    }
+}
@@ -0,0 +1,149 @@
+package com.blackcat.currencyedittext;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Formats amounts ahead of time on a background executor, so that lists can bind already-formatted text.
+ *
+ * Hand the provider the raw values about to come on screen (for instance the items just beyond the visible
+ * window of a RecyclerView, from an OnScrollListener or a prefetch hint) with prefetch(). They are formatted
+ * on the executor into a bounded cache. At bind time, get() returns the cached text, or formats the value on
+ * the spot if it has not been prefetched.
+ *
+ * When the locale or decimal digits of the list change, pass the new formatter to setFormatter(). Everything
+ * cached for the old formatter is discarded, and prefetches still in flight for it are abandoned.
+ *
+ * All methods may be called from any thread.
+ */
+public final class FormattedAmountProvider {
+
+    private static final int DEFAULT_CACHE_SIZE = 512;
+
+    private final Executor executor;
+    private final int cacheSize;
+
+    private volatile Generation current;
+
+    /**
+     * @param formatter The formatter used to format amounts.
+     * @param executor The executor on which prefetched amounts are formatted.
+     */
+    public FormattedAmountProvider(CurrencyFormatter formatter, Executor executor){
+        this(formatter, executor, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param formatter The formatter used to format amounts.
+     * @param executor The executor on which prefetched amounts are formatted.
+     * @param cacheSize The maximum number of formatted amounts to hold. Should comfortably exceed the number of
+     *                  items visible at once plus the prefetch window.
+     */
+    public FormattedAmountProvider(CurrencyFormatter formatter, Executor executor, int cacheSize){
+        if(formatter == null || executor == null){
+            throw new IllegalArgumentException("formatter and executor must not be null");
+        }
+        this.executor = executor;
+        this.cacheSize = cacheSize;
+        this.current = new Generation(formatter, cacheSize);
+    }
+
+    /**
+     * Replaces the formatter used by this provider, discarding every amount formatted with the previous one.
+     * Does nothing if formatter is the formatter already in use.
+     */
+    public void setFormatter(CurrencyFormatter formatter){
+        if(formatter == null){
+            throw new IllegalArgumentException("formatter must not be null");
+        }
+        if(formatter != current.formatter){
+            current = new Generation(formatter, cacheSize);
+        }
+    }
+
+    public CurrencyFormatter getFormatter(){
+        return current.formatter;
+    }
+
+    /**
+     * Formats values[from] up to (but not including) values[to] in the background, skipping those already cached.
+     * The values are copied, so the array may be reused as soon as this method returns.
+     */
+    public void prefetch(long[] values, int from, int to){
+        if(from < 0 || to > values.length || from > to){
+            throw new IndexOutOfBoundsException("Invalid range [" + from + ", " + to + ") for " + values.length + " values");
+        }
+        if(from == to){
+            return;
+        }
+        final Generation generation = current;
+        final long[] pending = new long[to - from];
+        System.arraycopy(values, from, pending, 0, pending.length);
+
+        try{
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for(long value : pending){
+                        //stop early if the formatter was replaced while this prefetch was queued
+                        if(generation != current){
+                            return;
+                        }
+                        if(!generation.cache.containsKey(value)){
+                            generation.cache.put(value, generation.formatter.format(value));
+                        }
+                    }
+                }
+            });
+        }
+        catch(RejectedExecutionException e){
+            //prefetching is only an optimization; get() will format these values when they are needed
+        }
+    }
+
+    /**
+     * Formats values in the background, skipping those already cached.
+     */
+    public void prefetch(long[] values){
+        prefetch(values, 0, values.length);
+    }
+
+    /**
+     * Returns the formatted text of value, from the cache if it was prefetched (or requested before), or by
+     * formatting it on the calling thread otherwise.
+     */
+    public String get(long value){
+        Generation generation = current;
+        String formatted = generation.cache.get(value);
+        if(formatted == null){
+            formatted = generation.formatter.format(value);
+            generation.cache.put(value, formatted);
+        }
+        return formatted;
+    }
+
+    /**
+     * Discards every cached amount.
+     */
+    public void clear(){
+        current.cache.clear();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the cache used by the current formatter. A hit means get() returned
+     * a value without formatting it.
+     */
+    public CacheStats getStats(){
+        return current.cache.stats();
+    }
+
+    private static final class Generation {
+        final CurrencyFormatter formatter;
+        final BoundedCache<Long, String> cache;
+
+        Generation(CurrencyFormatter formatter, int cacheSize){
+            this.formatter = formatter;
+            this.cache = new BoundedCache<>(cacheSize);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.blackcat.currencyedittext;
+
+/**
+ * The result of formatting an array of values in one call, with every formatted value packed
+ * back-to-back in a single char buffer.
+ *
+ * The formatted text of value i occupies getChars()[getStart(i)] up to (but not including)
+ * getChars()[getEnd(i)].
+ */
+public final class FormattedBatch {
+
+    private final char[] chars;
+    private final int[] offsets;
+
+    FormattedBatch(char[] chars, int[] offsets){
+        this.chars = chars;
+        this.offsets = offsets;
+    }
+
+    /**
+     * The number of formatted values held by this batch.
+     */
+    public int size(){
+        return offsets.length - 1;
+    }
+
+    /**
+     * The buffer holding every formatted value, back-to-back.
+     */
+    public char[] getChars(){
+        return chars;
+    }
+
+    /**
+     * The offset within getChars() at which the formatted text of value i begins.
+     */
+    public int getStart(int i){
+        checkIndex(i);
+        return offsets[i];
+    }
+
+    /**
+     * The offset within getChars() at which the formatted text of value i ends (exclusive).
+     */
+    public int getEnd(int i){
+        checkIndex(i);
+        return offsets[i + 1];
+    }
+
+    /**
+     * Returns the formatted text of value i as a new String.
+     */
+    public String get(int i){
+        checkIndex(i);
+        return new String(chars, offsets[i], offsets[i + 1] - offsets[i]);
+    }
+
+    private void checkIndex(int i){
+        if(i < 0 || i >= size()){
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size());
+        }
+    }
+}
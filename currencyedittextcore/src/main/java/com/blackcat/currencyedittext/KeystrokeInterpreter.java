@@ -0,0 +1,325 @@
+package com.blackcat.currencyedittext;
+
+/**
+ * Tracks the value shown by a CurrencyEditText and updates it from the edits reported to its TextWatcher.
+ *
+ * The common edits - typing a digit after the last digit, deleting the last digit and typing a minus sign -
+ * are applied arithmetically to the current value, without looking at the rest of the text. Any other edit
+ * (pasting, replacing a selection, editing in the middle of the number or text changed by the application)
+ * falls back to parsing the whole field.
+ */
+final class KeystrokeInterpreter {
+
+    /** The value changed, and must be formatted and displayed. */
+    static final int VALUE_CHANGED = 0;
+    /** The edit did not change the value. The previously displayed text should be restored. */
+    static final int VALUE_UNCHANGED = 1;
+    /** The field was emptied. */
+    static final int CLEARED = 2;
+    /** The field holds nothing but a minus sign, the start of a negative number. */
+    static final int SIGN_ONLY = 3;
+    /** The field holds a value too large for a long. The value is left as it was before the edit. */
+    static final int OVERFLOW = 4;
+
+    //the value currently being edited
+    private long value;
+    private boolean negative;
+    private boolean hasDigits;
+
+    //the value and layout of the text most recently displayed
+    private long displayedValue;
+    private boolean displayedNegative;
+    private boolean displayedHasDigits;
+    private int displayedLength;
+    private int digitsEnd;
+    private CurrencyFormatSpec displayedSpec;
+
+    //the edit currently in progress, as reported by beforeTextChanged and onTextChanged
+    private boolean editTracked;
+    private int editStart;
+    private int editBefore;
+    private int editCount;
+    private char deletedChar;
+    private char insertedChar;
+
+    //the number of digits right of the caret once the edit was made, which should stay right of it once the
+    //edited text is formatted
+    private int digitsAfterCaret;
+
+    private final ParseResult parseResult = new ParseResult();
+
+    /**
+     * Records the text about to be replaced. Only single character deletions need to be remembered.
+     */
+    void beforeTextChanged(CharSequence text, int start, int count, int after){
+        //If the text does not have the length we last displayed, it was changed behind our back.
+        editTracked = displayedSpec != null && text.length() == displayedLength;
+        editStart = start;
+        editBefore = count;
+        editCount = after;
+        if(count == 1){
+            deletedChar = text.charAt(start);
+        }
+    }
+
+    void onTextChanged(CharSequence text, int start, int before, int count){
+        editTracked &= start == editStart && before == editBefore && count == editCount;
+        if(count == 1){
+            insertedChar = text.charAt(start);
+        }
+    }
+
+    /**
+     * Applies the most recent edit to the current value.
+     * @param text The text of the field after the edit.
+     * @return One of VALUE_CHANGED, VALUE_UNCHANGED, CLEARED, SIGN_ONLY or OVERFLOW.
+     */
+    int apply(CharSequence text, CurrencyFormatSpec spec, boolean allowNegative){
+        boolean tracked = editTracked && spec == displayedSpec;
+        editTracked = false;
+        digitsAfterCaret = tracked ? digitsAfterEdit(text, spec) : 0;
+
+        if(text.length() == 0){
+            value = 0;
+            negative = false;
+            hasDigits = false;
+            return CLEARED;
+        }
+
+        if(tracked && editBefore == 0 && editCount == 1){
+            int digit = spec.digitValue(insertedChar);
+            if(digit >= 0){
+                //digits typed after the last digit shift the value left, like a calculator
+                if(editStart >= digitsEnd && appendDigit(digit)){
+                    return outcome();
+                }
+            }
+            else if(spec.isMinusSign(insertedChar)){
+                if(!allowNegative || value == Long.MIN_VALUE){
+                    return VALUE_UNCHANGED;
+                }
+                negative = !negative;
+                value = -value;
+                return outcome();
+            }
+            else{
+                //any other character does not affect the value
+                return VALUE_UNCHANGED;
+            }
+        }
+        else if(tracked && editBefore == 1 && editCount == 0){
+            int digit = spec.digitValue(deletedChar);
+            if(digit >= 0){
+                if(editStart == digitsEnd - 1 && hasDigits){
+                    value /= 10;
+                    return outcome();
+                }
+            }
+            else if(!spec.isMinusSign(deletedChar)){
+                //removing a separator or the currency symbol does not affect the value
+                return VALUE_UNCHANGED;
+            }
+        }
+
+        return reparse(text, spec, allowNegative);
+    }
+
+    /**
+     * Records the new text displayed as a result of the last call to apply().
+     */
+    void displayed(CharSequence text, CurrencyFormatSpec spec){
+        int length = text.length();
+        if(length == 0){
+            value = 0;
+            negative = false;
+            hasDigits = false;
+        }
+
+        if(hasDigits && spec.isExact()){
+            //text was written by spec, so its digits end where its suffix begins
+            digitsEnd = spec.digitsEnd(negative, length);
+        }
+        else{
+            digitsEnd = findDigitsEnd(text, spec);
+        }
+        displayedLength = length;
+        displayedSpec = spec;
+
+        displayedValue = value;
+        displayedNegative = negative;
+        displayedHasDigits = hasDigits;
+    }
+
+    /**
+     * Records text formatted from value by spec and displayed without going through apply(), such as a value
+     * set by the application.
+     */
+    void displayed(long value, CharSequence text, CurrencyFormatSpec spec){
+        this.value = value;
+        negative = value < 0;
+        hasDigits = true;
+        editTracked = false;
+        digitsAfterCaret = 0;
+        displayed(text, spec);
+    }
+
+    /**
+     * Records text displayed for a value too large for a long, which this interpreter cannot hold. Every edit
+     * is parsed in full until a value which fits is displayed again.
+     */
+    void displayedOverflow(CharSequence text, CurrencyFormatSpec spec){
+        value = 0;
+        negative = false;
+        hasDigits = false;
+        editTracked = false;
+        digitsAfterCaret = 0;
+        displayed(text, spec);
+        displayedSpec = null;
+    }
+
+    /**
+     * Discards the edit in progress and returns to the most recently displayed value. Called when the
+     * previously displayed text is put back in place.
+     */
+    void revert(){
+        value = displayedValue;
+        negative = displayedNegative;
+        hasDigits = displayedHasDigits;
+    }
+
+    /**
+     * Forgets the displayed text, forcing the next edit to be parsed in full.
+     */
+    void reset(){
+        displayedSpec = null;
+        editTracked = false;
+    }
+
+    long getValue(){
+        return value;
+    }
+
+    boolean isNegative(){
+        return negative;
+    }
+
+    /**
+     * The position just after the last digit of the displayed text, or its length if it has no digits.
+     */
+    int getDigitsEnd(){
+        return digitsEnd;
+    }
+
+    /**
+     * Returns where the caret belongs in text, the text now displayed, following the last call to apply(): with as
+     * many digits to its right as there were right of it once the edit was made. Typing or deleting in the middle
+     * of the number therefore keeps the caret in place, while the caret follows the last digit for edits made at
+     * the end of the number and text replaced by the application.
+     */
+    int cursorFor(CharSequence text, CurrencyFormatSpec spec){
+        if(spec == displayedSpec && displayedHasDigits && spec.isExact() && text.length() == displayedLength){
+            //text was written by spec, so the position can be computed from its layout
+            return spec.offsetWithDigitsAfter(displayedNegative, displayedLength, digitsAfterCaret);
+        }
+        int end = findDigitsEnd(text, spec);
+        if(digitsAfterCaret == 0){
+            return end;
+        }
+        int seen = 0;
+        for(int i = end - 1; i >= 0; i--){
+            if(spec.digitValue(text.charAt(i)) >= 0 && ++seen == digitsAfterCaret){
+                //step left over any separators, as long as there is another digit beyond them
+                int j = i;
+                while(j > 0 && spec.digitValue(text.charAt(j - 1)) < 0){
+                    j--;
+                }
+                return j > 0 ? j : i;
+            }
+        }
+        return Math.min(end, firstDigit(text, spec));
+    }
+
+    /**
+     * Describes the current value in a ParseResult, for use with CurrencyTextFormatter.format().
+     */
+    ParseResult toParseResult(){
+        parseResult.set(value, negative, false, hasDigits ? 1 : 0, 0);
+        return parseResult;
+    }
+
+    private boolean appendDigit(int digit){
+        if(negative ? value < (Long.MIN_VALUE + digit) / 10 : value > (Long.MAX_VALUE - digit) / 10){
+            return false;
+        }
+        value = negative ? value * 10 - digit : value * 10 + digit;
+        hasDigits = true;
+        return true;
+    }
+
+    private int outcome(){
+        if(!hasDigits){
+            return negative ? SIGN_ONLY : CLEARED;
+        }
+        if(value == displayedValue && negative == displayedNegative && displayedHasDigits){
+            return VALUE_UNCHANGED;
+        }
+        return VALUE_CHANGED;
+    }
+
+    private int reparse(CharSequence text, CurrencyFormatSpec spec, boolean allowNegative){
+        CurrencyTextFormatter.parse(text, spec, allowNegative, parseResult);
+        if(parseResult.hasValue()){
+            value = parseResult.getValue();
+            negative = parseResult.isNegative();
+            hasDigits = true;
+            //the configuration may have changed, in which case the same value must still be formatted again
+            if(spec != displayedSpec){
+                return VALUE_CHANGED;
+            }
+            return outcome();
+        }
+        if(parseResult.getDigitCount() == 0 && parseResult.isNegative()){
+            value = 0;
+            negative = true;
+            hasDigits = false;
+            return SIGN_ONLY;
+        }
+        revert();
+        return parseResult.isOverflow() ? OVERFLOW : VALUE_UNCHANGED;
+    }
+
+    /**
+     * Counts the digits right of the caret, which the edit just tracked left at the end of the inserted text.
+     */
+    private int digitsAfterEdit(CharSequence text, CurrencyFormatSpec spec){
+        if(displayedHasDigits && spec.isExact()){
+            //the text right of the edit is unchanged, so it can be measured in the layout of the displayed text
+            return spec.digitsAfter(displayedNegative, displayedLength, editStart + editBefore);
+        }
+        int digits = 0;
+        for(int i = editStart + editCount; i < text.length(); i++){
+            if(spec.digitValue(text.charAt(i)) >= 0){
+                digits++;
+            }
+        }
+        return digits;
+    }
+
+    private static int firstDigit(CharSequence text, CurrencyFormatSpec spec){
+        for(int i = 0; i < text.length(); i++){
+            if(spec.digitValue(text.charAt(i)) >= 0){
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    private static int findDigitsEnd(CharSequence text, CurrencyFormatSpec spec){
+        for(int i = text.length() - 1; i >= 0; i--){
+            if(spec.digitValue(text.charAt(i)) >= 0){
+                return i + 1;
+            }
+        }
+        return text.length();
+    }
+}
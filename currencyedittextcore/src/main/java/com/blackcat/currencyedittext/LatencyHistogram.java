@@ -0,0 +1,117 @@
+package com.blackcat.currencyedittext;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of durations in nanoseconds, with one bucket per power of two.
+ *
+ * Recording is lock-free and allocation-free, which makes it cheap enough to call on every keystroke. In exchange,
+ * percentiles are only resolved to the bucket they fall in; getPercentile() reports the upper bound of that bucket.
+ */
+public final class LatencyHistogram {
+
+    //bucket i holds durations in [2^i, 2^(i+1)) nanoseconds; bucket 0 also holds 0
+    static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long durationNanos){
+        if(durationNanos < 0){
+            durationNanos = 0;
+        }
+        buckets.incrementAndGet(bucketOf(durationNanos));
+        count.incrementAndGet();
+        totalNanos.addAndGet(durationNanos);
+
+        long max = maxNanos.get();
+        while(durationNanos > max && !maxNanos.compareAndSet(max, durationNanos)){
+            max = maxNanos.get();
+        }
+    }
+
+    public long getCount(){
+        return count.get();
+    }
+
+    public long getMaxNanos(){
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the mean of the recorded durations, or 0 if there are none.
+     */
+    public long getMeanNanos(){
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / n;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the recorded durations, or 0 if there are none.
+     * @param percentile Between 0 and 100, e.g. 99 for the 99th percentile.
+     * @throws IllegalArgumentException If percentile does not fall within the range (0, 100) inclusive.
+     */
+    public long getPercentileNanos(double percentile){
+        if(percentile < 0 || percentile > 100){
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long[] snapshot = getBucketCounts();
+        long total = 0;
+        for(long bucketCount : snapshot){
+            total += bucketCount;
+        }
+        if(total == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for(int i = 0; i < snapshot.length; i++){
+            seen += snapshot[i];
+            if(seen >= rank){
+                return Math.min(upperBoundNanos(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Returns the number of durations recorded in each bucket. Bucket i holds durations of at least 2^i
+     * nanoseconds, and less than 2^(i+1).
+     */
+    public long[] getBucketCounts(){
+        long[] snapshot = new long[BUCKET_COUNT];
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            snapshot[i] = buckets.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Discards every recorded duration. Durations recorded concurrently may or may not be kept.
+     */
+    public void reset(){
+        for(int i = 0; i < BUCKET_COUNT; i++){
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString(){
+        return "LatencyHistogram[count=" + getCount() + ", mean=" + getMeanNanos() + "ns, p50<=" + getPercentileNanos(50)
+                + "ns, p99<=" + getPercentileNanos(99) + "ns, max=" + getMaxNanos() + "ns]";
+    }
+
+    private static int bucketOf(long durationNanos){
+        return durationNanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(durationNanos);
+    }
+
+    private static long upperBoundNanos(int bucket){
+        return bucket >= 62 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.blackcat.currencyedittext;
+
+/**
+ * Holds the outcome of CurrencyTextFormatter.parse(). Rather than throwing, the parser reports empty input,
+ * overflow and unrecognized characters through this object.
+ *
+ * A ParseResult may be reused for any number of parse calls, which allows text to be parsed on every
+ * keystroke without allocating. Instances are not thread-safe.
+ */
+public final class ParseResult {
+
+    private long value;
+    private boolean negative;
+    private boolean overflow;
+    private int digitCount;
+    private int invalidCharCount;
+
+    public ParseResult(){}
+
+    void set(long value, boolean negative, boolean overflow, int digitCount, int invalidCharCount){
+        this.value = value;
+        this.negative = negative;
+        this.overflow = overflow;
+        this.digitCount = digitCount;
+        this.invalidCharCount = invalidCharCount;
+    }
+
+    /**
+     * The parsed value in the currencies lowest denomination (e.g. 1337 for "$13.37"), including its sign.
+     * Only meaningful when hasValue() returns true; otherwise 0.
+     */
+    public long getValue(){
+        return value;
+    }
+
+    /**
+     * Whether the text contained a minus sign (and negative values were allowed). Note that this may be
+     * true while getValue() returns 0, e.g. for "-" or "-$0.00".
+     */
+    public boolean isNegative(){
+        return negative;
+    }
+
+    /**
+     * Whether the digits in the text represent a value too large to be held in a long.
+     */
+    public boolean isOverflow(){
+        return overflow;
+    }
+
+    /**
+     * The number of digits found in the text.
+     */
+    public int getDigitCount(){
+        return digitCount;
+    }
+
+    /**
+     * The number of characters found in the text which are neither digits nor part of the formatting
+     * rules (currency symbol, separators, minus sign or whitespace) of the spec used to parse it.
+     * These characters are ignored by the parser.
+     */
+    public int getInvalidCharCount(){
+        return invalidCharCount;
+    }
+
+    /**
+     * Returns true if the text held at least one digit and its value fits in a long.
+     */
+    public boolean hasValue(){
+        return digitCount > 0 && !overflow;
+    }
+
+    /**
+     * Returns true if the text held a value that fits in a long, and contained no unrecognized characters.
+     */
+    public boolean isValid(){
+        return hasValue() && invalidCharCount == 0;
+    }
+
+    @Override
+    public String toString(){
+        return "ParseResult[value=" + value + ", negative=" + negative + ", overflow=" + overflow
+                + ", digits=" + digitCount + ", invalidChars=" + invalidCharCount + "]";
+    }
+}
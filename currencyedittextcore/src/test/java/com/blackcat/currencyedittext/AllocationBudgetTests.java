@@ -0,0 +1,185 @@
+package com.blackcat.currencyedittext;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Fails when the hot paths allocate more than their budget, so that allocation regressions (and the GC pauses they
+ * cause while typing on older devices) are caught before release. Allocations are measured with the JVM's per-thread
+ * allocation counters; the tests are skipped on JVMs which don't provide them.
+ *
+ * Budgets are in bytes per operation, and may be overridden with the system properties keystrokeAllocationBudget
+ * and formatTextAllocationBudget (e.g. ./gradlew :currencyedittextcore:test -PkeystrokeAllocationBudget=128).
+ */
+public class AllocationBudgetTests {
+
+    private static final long DEFAULT_KEYSTROKE_BUDGET = 256;
+    private static final long DEFAULT_FORMAT_TEXT_BUDGET = 512;
+
+    private static final Locale[] LOCALES = {Locale.US, Locale.GERMANY, Locale.JAPAN, new Locale("fr", "CH")};
+
+    //the keys typed, created up front so that they don't count towards the budget
+    private static final String[] DIGITS = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9"};
+
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int MEASURED_ITERATIONS = 20000;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setup() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void KeystrokeStaysWithinAllocationBudgetTest() {
+        long budget = Long.getLong("keystrokeAllocationBudget", DEFAULT_KEYSTROKE_BUDGET);
+
+        for (Locale locale : LOCALES) {
+            SimulatedField field = new SimulatedField(CurrencyTextFormatter.getFormatSpec(locale, Locale.US, 2));
+            //each round types six digits and deletes them again
+            for (int i = 0; i < WARMUP_ITERATIONS / 12; i++) {
+                field.typeAndDelete();
+            }
+
+            long start = allocatedBytes();
+            for (int i = 0; i < MEASURED_ITERATIONS / 12; i++) {
+                field.typeAndDelete();
+            }
+            long perKeystroke = (allocatedBytes() - start) / (MEASURED_ITERATIONS / 12 * 12);
+
+            assertThat("Bytes allocated per keystroke for " + locale, perKeystroke, lessThanOrEqualTo(budget));
+        }
+    }
+
+    @Test
+    public void FormatTextStaysWithinAllocationBudgetTest() {
+        long budget = Long.getLong("formatTextAllocationBudget", DEFAULT_FORMAT_TEXT_BUDGET);
+        String[] values = {"0", "1337", "-123456", "1000000000"};
+
+        for (Locale locale : LOCALES) {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                CurrencyTextFormatter.formatText(values[i % values.length], locale, Locale.US, 2);
+            }
+
+            long start = allocatedBytes();
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                CurrencyTextFormatter.formatText(values[i % values.length], locale, Locale.US, 2);
+            }
+            long perCall = (allocatedBytes() - start) / MEASURED_ITERATIONS;
+
+            assertThat("Bytes allocated per formatText() for " + locale, perCall, lessThanOrEqualTo(budget));
+        }
+    }
+
+    private long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * A field backed by a StringBuilder, edited through the same CurrencyFieldEditor (and input rules) as the text
+     * of a CurrencyEditText. Keystrokes are reported to the editor the way the framework reports them to
+     * CurrencyTextWatcher.
+     */
+    private static final class SimulatedField implements CurrencyFieldEditor.Field {
+
+        private final CurrencyFormatSpec spec;
+        private final CurrencyFieldEditor editor = new CurrencyFieldEditor(this);
+        private final StringBuilder text = new StringBuilder();
+        private long rawValue;
+        private int cursor;
+
+        SimulatedField(CurrencyFormatSpec spec) {
+            this.spec = spec;
+            editor.displayValue(0L, spec.format(0L));
+        }
+
+        void typeAndDelete() {
+            for (char digit = '1'; digit <= '6'; digit++) {
+                type(digit);
+            }
+            for (int i = 0; i < 6; i++) {
+                backspace();
+            }
+        }
+
+        private void type(char key) {
+            CharSequence keys = DIGITS[key - '0'];
+            if (CurrencyInputRules.filter(keys, 0, 1, text, cursor, cursor, spec, false, CurrencyInputRules.MAX_LONG_SAFE_DIGITS) != null) {
+                return;
+            }
+            int start = cursor;
+            editor.beforeTextChanged(text, start, 0, 1);
+            text.insert(start, key);
+            editor.onTextChanged(text, start, 0, 1);
+            cursor = start + 1;
+            editor.afterTextChanged();
+        }
+
+        private void backspace() {
+            int start = cursor - 1;
+            editor.beforeTextChanged(text, start, 1, 0);
+            text.deleteCharAt(start);
+            editor.onTextChanged(text, start, 1, 0);
+            cursor = start;
+            editor.afterTextChanged();
+        }
+
+        @Override
+        public CurrencyFormatSpec getFormatSpec() {
+            return spec;
+        }
+
+        @Override
+        public boolean areNegativeValuesAllowed() {
+            return false;
+        }
+
+        @Override
+        public boolean isExactMode() {
+            return false;
+        }
+
+        @Override
+        public void setRawValue(long value) {
+            rawValue = value;
+        }
+
+        @Override
+        public void setRawValueExact(boolean isNegative, String digits) {
+            throw new AssertionError("Values beyond a long are not typed in this test");
+        }
+
+        @Override
+        public CharSequence getText() {
+            return text;
+        }
+
+        @Override
+        public void replaceText(int start, int end, CharSequence replacement, int replacementStart, int replacementEnd) {
+            text.delete(start, end);
+            text.insert(start, replacement, replacementStart, replacementEnd);
+        }
+
+        @Override
+        public void setCursor(int position) {
+            cursor = position;
+        }
+
+        @Override
+        public void onTextDisplayed() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.blackcat.currencyedittext;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CurrencyFormatterTests {
+
+    @Test
+    public void FormatMatchesStaticFormatterTest() {
+        CurrencyFormatter formatter = new CurrencyFormatter(Locale.GERMANY, Locale.US, 2);
+        String[] values = {"0", "-0", "5", "-1337", "100000", "123456789012"};
+
+        for (String value : values) {
+            assertThat(formatter.format(value), is(equalTo(CurrencyTextFormatter.formatText(value, Locale.GERMANY, Locale.US, 2))));
+        }
+    }
+
+    @Test
+    public void SingleArgumentConstructorUsesCurrencyDecimalDigitsTest() {
+        CurrencyFormatter formatter = new CurrencyFormatter(Locale.JAPAN);
+
+        assertThat(formatter.getDecimalDigits(), is(equalTo(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ConstructorThrowsExceptionForIllegalDecimalDigitsTest() {
+        new CurrencyFormatter(Locale.US, Locale.US, 341);
+    }
+
+    @Test
+    public void SharedFormatterCanBeUsedFromManyThreadsTest() throws Exception {
+        //de_AT can't be compiled exactly on every JVM, which exercises the DecimalFormat fallback as well
+        final CurrencyFormatter[] formatters = {new CurrencyFormatter(Locale.US), new CurrencyFormatter(new Locale("de", "AT"))};
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (CurrencyFormatter formatter : formatters) {
+                            for (long value = -5000; value < 5000; value += 7) {
+                                if (formatter.parse(formatter.format(value)).getValue() != value) {
+                                    return false;
+                                }
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(), is(true));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void FormatWideValueKeepsEveryDigitTest() {
+        CurrencyFormatter formatter = new CurrencyFormatter(Locale.US, Locale.US, 2);
+        BigInteger value = new BigInteger("-123456789012345678901234567890");
+
+        String result = formatter.format(value);
+
+        assertThat(result, is(equalTo("-$1,234,567,890,123,456,789,012,345,678.90")));
+        assertThat(formatter.parseExact(result), is(equalTo(value)));
+    }
+
+    @Test
+    public void FormatWideValueMatchesLongFormattingTest() {
+        CurrencyFormatter formatter = new CurrencyFormatter(Locale.GERMANY, Locale.US, 8);
+        long[] values = {0L, 5L, -1337L, Long.MAX_VALUE, Long.MIN_VALUE};
+
+        for (long value : values) {
+            assertThat(formatter.format(BigInteger.valueOf(value)), is(equalTo(formatter.format(value))));
+        }
+    }
+}
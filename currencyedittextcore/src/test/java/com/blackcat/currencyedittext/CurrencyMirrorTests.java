@@ -0,0 +1,54 @@
+package com.blackcat.currencyedittext;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CurrencyMirrorTests {
+
+    @Test
+    public void ConvertRoundsHalfAwayFromZeroTest() {
+        //0.9215 EUR per USD
+        CurrencyMirror mirror = new CurrencyMirror(new CurrencyFormatter(Locale.GERMANY, Locale.US, 2), 9215L, 4);
+
+        assertThat(mirror.convert(100L, 2), is(equalTo(92L)));
+        assertThat(mirror.convert(1000L, 2), is(equalTo(922L)));
+        assertThat(mirror.convert(-1000L, 2), is(equalTo(-922L)));
+        assertThat(mirror.convert(0L, 2), is(equalTo(0L)));
+        assertThat(mirror.format(123456L, 2), is(equalTo(new CurrencyFormatter(Locale.GERMANY, Locale.US, 2).format(113765L))));
+    }
+
+    @Test
+    public void ConvertAccountsForDecimalDigitsOfBothCurrenciesTest() {
+        //151.25 JPY per USD; yen have no decimal digits
+        CurrencyMirror mirror = new CurrencyMirror(new CurrencyFormatter(Locale.JAPAN, Locale.US, 0), 15125L, 2);
+
+        assertThat(mirror.convert(1000L, 2), is(equalTo(1513L)));
+        assertThat(mirror.convert(1000L, 0), is(equalTo(151250L)));
+        assertThat(mirror.withRate(1L, 0).convert(1000L, 3), is(equalTo(1L)));
+    }
+
+    @Test
+    public void LargeValuesMatchBigIntegerConversionTest() {
+        CurrencyMirror mirror = new CurrencyMirror(new CurrencyFormatter(Locale.US, Locale.US, 8), 123456789L, 3);
+        long[] values = {1L, -987654321L, Long.MAX_VALUE / 1000, Long.MAX_VALUE, Long.MIN_VALUE};
+
+        for (long value : values) {
+            BigInteger expected = mirror.convert(BigInteger.valueOf(value), 2);
+            assertThat(mirror.format(value, 2), is(equalTo(mirror.getFormatter().format(expected))));
+            if (expected.bitLength() < 64) {
+                assertThat(mirror.convert(value, 2), is(equalTo(expected.longValue())));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void NegativeRateIsRejectedTest() {
+        new CurrencyMirror(new CurrencyFormatter(Locale.US), -1L, 2);
+    }
+}
@@ -0,0 +1,318 @@
+package com.blackcat.currencyedittext;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests for the platform independent formatting classes. These run on a plain JVM, without robolectric.
+ */
+public class CurrencyTextFormatterTests {
+
+    @After
+    public void teardown() {
+        CurrencyTextFormatter.setLogger(null);
+        CurrencyTextFormatter.setValueCacheSize(0);
+        CurrencyTextFormatter.setMetricsListener(null);
+    }
+
+    @Test
+    public void FormatUSDCurrencyTest() {
+        String result = CurrencyTextFormatter.formatText("100000", Locale.US, Locale.US, 2);
+
+        assertThat(result, is(equalTo("$1,000.00")));
+    }
+
+    @Test
+    public void FormatNegativeZeroKeepsSignTest() {
+        String result = CurrencyTextFormatter.formatText("-0", Locale.US, Locale.US, 2);
+
+        assertThat(result, is(equalTo("-$0.00")));
+    }
+
+    @Test
+    public void FormatTextStartingNegativeNumberTest() {
+        String result = CurrencyTextFormatter.formatText("-", Locale.US);
+
+        assertThat(result, is(equalTo("-")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void FormatTextWithoutDigitsThrowsExceptionTest() {
+        CurrencyTextFormatter.formatText("$.", Locale.US, Locale.US, 2);
+    }
+
+    @Test
+    public void FormatAndParseRoundTripTest() {
+        CurrencyFormatSpec spec = CurrencyTextFormatter.getFormatSpec(Locale.GERMANY, Locale.US, 2);
+        long[] values = {0L, 7L, -1337L, 123456789L, Long.MAX_VALUE, Long.MIN_VALUE};
+
+        for (long value : values) {
+            ParseResult result = CurrencyTextFormatter.parse(spec.format(value), spec);
+            assertThat(result.isValid(), is(true));
+            assertThat(result.getValue(), is(equalTo(value)));
+        }
+    }
+
+    @Test
+    public void FormatFromManyThreadsMatchesSingleThreadedOutputTest() throws Exception {
+        final long[] values = new long[5000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i * 7919L) - 100000L;
+        }
+        final String[] expected = CurrencyTextFormatter.formatAll(values, Locale.FRANCE, Locale.US, 2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = 0; i < values.length; i++) {
+                            if (!CurrencyTextFormatter.formatText(Long.toString(values[i]), Locale.FRANCE, Locale.US, 2).equals(expected[i])) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(), is(true));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void FallbackToDefaultLocaleIsReportedToLoggerTest() {
+        final List<String> messages = new ArrayList<>();
+        CurrencyTextFormatter.setLogger(new CurrencyLogger() {
+            @Override
+            public void warn(String tag, String message) {
+                messages.add(message);
+            }
+
+            @Override
+            public void error(String tag, String message) {
+                messages.add(message);
+            }
+        });
+        CurrencyTextFormatter.clearFormatterCache();
+
+        String result = CurrencyTextFormatter.formatText("100", null, Locale.US, 2);
+
+        assertThat(result, is(equalTo("$1.00")));
+        assertThat(messages.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void DefaultLoggerDoesNotReplaceInstalledLoggerTest() {
+        CurrencyLogger installed = new CurrencyLogger() {
+            @Override
+            public void warn(String tag, String message) {
+            }
+
+            @Override
+            public void error(String tag, String message) {
+            }
+        };
+        CurrencyLogger platform = new CurrencyLogger() {
+            @Override
+            public void warn(String tag, String message) {
+            }
+
+            @Override
+            public void error(String tag, String message) {
+            }
+        };
+
+        CurrencyTextFormatter.setLogger(installed);
+        CurrencyTextFormatter.setLoggerIfDefault(platform);
+        assertThat(CurrencyTextFormatter.getLogger(), is(sameInstance(installed)));
+
+        CurrencyTextFormatter.setLogger(null);
+        CurrencyTextFormatter.setLoggerIfDefault(platform);
+        assertThat(CurrencyTextFormatter.getLogger(), is(sameInstance(platform)));
+    }
+
+    @Test
+    public void FormatTextKeepsEveryDigitOfValuesTooLargeForLongTest() {
+        String result = CurrencyTextFormatter.formatText("-123456789012345678901234", Locale.US, Locale.US, 2);
+
+        assertThat(result, is(equalTo("-$1,234,567,890,123,456,789,012.34")));
+    }
+
+    @Test
+    public void RepeatedValuesAreServedFromValueCacheTest() {
+        CurrencyTextFormatter.setValueCacheSize(2);
+
+        assertThat(CurrencyTextFormatter.formatText("0", Locale.US, Locale.US, 2), is(equalTo("$0.00")));
+        assertThat(CurrencyTextFormatter.formatText("0", Locale.US, Locale.US, 2), is(equalTo("$0.00")));
+        assertThat(CurrencyTextFormatter.formatText("-0", Locale.US, Locale.US, 2), is(equalTo("-$0.00")));
+        assertThat(CurrencyTextFormatter.formatText("1337", Locale.US, Locale.US, 2), is(equalTo("$13.37")));
+
+        CacheStats stats = CurrencyTextFormatter.getValueCacheStats();
+        assertThat(stats.getHitCount(), is(equalTo(1L)));
+        assertThat(stats.getMissCount(), is(equalTo(3L)));
+        assertThat(stats.getEvictionCount(), is(equalTo(1L)));
+        assertThat(stats.getSize(), is(equalTo(2)));
+    }
+
+    @Test
+    public void CurrencyFormatterBypassesValueCacheTest() {
+        CurrencyTextFormatter.setValueCacheSize(2);
+        CurrencyFormatter formatter = new CurrencyFormatter(Locale.US);
+
+        assertThat(formatter.format(0L), is(equalTo("$0.00")));
+        assertThat(formatter.format(0L), is(equalTo("$0.00")));
+        assertThat(formatter.format("0"), is(equalTo("$0.00")));
+
+        CacheStats stats = CurrencyTextFormatter.getValueCacheStats();
+        assertThat(stats.getHitCount(), is(equalTo(0L)));
+        assertThat(stats.getMissCount(), is(equalTo(0L)));
+        assertThat(stats.getSize(), is(equalTo(0)));
+    }
+
+    @Test
+    public void MetricsCountFormatCallsFallbacksAndErrorsTest() {
+        CurrencyMetrics metrics = new CurrencyMetrics();
+        CurrencyTextFormatter.setMetricsListener(metrics);
+        CurrencyTextFormatter.clearFormatterCache();
+
+        CurrencyTextFormatter.formatText("100", Locale.US, Locale.US, 2);
+        new CurrencyFormatter(Locale.US).format(100L);
+        CurrencyTextFormatter.formatText("100", null, Locale.US, 2);
+        try {
+            CurrencyTextFormatter.formatText("$.", Locale.US, Locale.US, 2);
+        }
+        catch (IllegalArgumentException e) {
+            //counted as an error
+        }
+
+        assertThat(metrics.getFormatLatency().getCount(), is(equalTo(3L)));
+        assertThat(metrics.getLocaleFallbackCount(), is(equalTo(1L)));
+        assertThat(metrics.getErrorCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void LatencyHistogramReportsPercentileBucketsTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1000000);
+
+        assertThat(histogram.getCount(), is(equalTo(100L)));
+        assertThat(histogram.getPercentileNanos(50), is(equalTo(1023L)));
+        assertThat(histogram.getPercentileNanos(100), is(equalTo(1000000L)));
+        assertThat(histogram.getMaxNanos(), is(equalTo(1000000L)));
+    }
+
+    @Test
+    public void TryFormatReportsMissingDigitsWithoutThrowingTest() {
+        FormatResult failed = CurrencyTextFormatter.tryFormat("$.", Locale.US, Locale.US, 2);
+        FormatResult formatted = CurrencyTextFormatter.tryFormat("1337", Locale.US, Locale.US, null);
+
+        assertThat(failed.isFormatted(), is(false));
+        assertThat(failed.getParseResult().getDigitCount(), is(equalTo(0)));
+        assertThat(formatted.getText(), is(equalTo("$13.37")));
+        assertThat(formatted.getParseResult().getValue(), is(equalTo(1337L)));
+    }
+
+    @Test
+    public void FormatSpecLocatesDigitsFromLayoutTest() {
+        CurrencyFormatSpec spec = CurrencyTextFormatter.getFormatSpec(Locale.US, Locale.US, 2);
+        String text = spec.format(-123456789L);
+        assertThat(text, is(equalTo("-$1,234,567.89")));
+
+        for (int offset = 0; offset <= text.length(); offset++) {
+            int digits = 0;
+            for (int i = offset; i < text.length(); i++) {
+                if (Character.isDigit(text.charAt(i))) {
+                    digits++;
+                }
+            }
+            assertThat(spec.digitsAfter(true, text.length(), offset), is(equalTo(digits)));
+        }
+
+        //offsets land right of a digit rather than right of a separator, and never inside the prefix
+        assertThat(spec.offsetWithDigitsAfter(true, text.length(), 0), is(equalTo(text.length())));
+        assertThat(spec.offsetWithDigitsAfter(true, text.length(), 2), is(equalTo(text.indexOf('.'))));
+        assertThat(spec.offsetWithDigitsAfter(true, text.length(), 5), is(equalTo(text.indexOf("4,5") + 1)));
+        assertThat(spec.offsetWithDigitsAfter(true, text.length(), 9), is(equalTo(2)));
+        assertThat(spec.offsetWithDigitsAfter(true, text.length(), 20), is(equalTo(2)));
+    }
+
+    @Test
+    public void FormatSpecGlyphsCoverFormattedTextTest() {
+        Locale[] locales = {Locale.US, Locale.GERMANY, Locale.JAPAN, new Locale("fr", "CH"), new Locale("ar", "EG")};
+        for (Locale locale : locales) {
+            CurrencyFormatSpec spec = CurrencyTextFormatter.getFormatSpec(locale, Locale.US, 2);
+            String glyphs = spec.glyphs();
+            for (long value : new long[]{0L, -1234567890L, 9876543210L}) {
+                String text = spec.format(value);
+                for (int i = 0; i < text.length(); i++) {
+                    assertThat(text + " in " + locale, glyphs.indexOf(text.charAt(i)) >= 0, is(true));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void InputRulesFilterEditsInOnePassTest() {
+        CurrencyFormatSpec spec = CurrencyTextFormatter.getFormatSpec(Locale.US, Locale.US, 2);
+        String text = "$0.12";
+
+        //accepted edits are left alone
+        assertThat(CurrencyInputRules.filter("3", 0, 1, text, 5, 5, spec, false, 3), is(nullValue()));
+        assertThat(CurrencyInputRules.filter("$1,0", 0, 4, text, 5, 5, spec, false, 6), is(nullValue()));
+        //letters, and minus signs while negative values are not allowed, are dropped
+        assertThat(CurrencyInputRules.filter("4a-5", 0, 4, text, 5, 5, spec, false, 18).toString(), is(equalTo("45")));
+        assertThat(CurrencyInputRules.filter("-", 0, 1, text, 0, 0, spec, true, 18), is(nullValue()));
+        //leading zeros don't count towards the limit, and a paste past it is cut off
+        assertThat(CurrencyInputRules.filter("00", 0, 2, "$0.00", 1, 1, spec, false, 1), is(nullValue()));
+        assertThat(CurrencyInputRules.filter("345", 0, 3, text, 5, 5, spec, false, 3).toString(), is(equalTo("3")));
+        assertThat(CurrencyInputRules.filter("9", 0, 1, text, 0, 5, spec, false, 1), is(nullValue()));
+    }
+
+    @Test
+    public void LocaleWithoutCurrencyIsOnlyResolvedOnceTest() {
+        final List<String> messages = new ArrayList<>();
+        CurrencyTextFormatter.setLogger(new CurrencyLogger() {
+            @Override
+            public void warn(String tag, String message) {
+                messages.add(message);
+            }
+
+            @Override
+            public void error(String tag, String message) {
+                messages.add(message);
+            }
+        });
+        CurrencyTextFormatter.clearFormatterCache();
+
+        for (int i = 0; i < 3; i++) {
+            CurrencyFormatter formatter = new CurrencyFormatter(new Locale("en"));
+            assertThat(formatter.getDecimalDigits(), is(equalTo(2)));
+        }
+
+        assertThat(messages.size(), is(equalTo(1)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.blackcat.currencyedittext;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class FormattedAmountProviderTests {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void PrefetchedAmountsAreServedFromCacheTest() {
+        CurrencyFormatter formatter = new CurrencyFormatter(Locale.US);
+        FormattedAmountProvider provider = new FormattedAmountProvider(formatter, DIRECT, 16);
+
+        provider.prefetch(new long[]{100L, 250L, 1337L});
+
+        assertThat(provider.get(1337L), is(equalTo("$13.37")));
+        assertThat(provider.get(100L), is(equalTo("$1.00")));
+        assertThat(provider.getStats().getHitCount(), is(equalTo(2L)));
+        assertThat(provider.getStats().getMissCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void ChangingFormatterDiscardsStalePrefetchesTest() {
+        final List<Runnable> queued = new ArrayList<>();
+        FormattedAmountProvider provider = new FormattedAmountProvider(new CurrencyFormatter(Locale.US), new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        }, 16);
+
+        provider.prefetch(new long[]{1337L});
+        provider.setFormatter(new CurrencyFormatter(Locale.UK));
+        queued.get(0).run();
+
+        assertThat(provider.getStats().getSize(), is(equalTo(0)));
+        assertThat(provider.get(1337L), is(equalTo("\u00a313.37")));
+    }
+}
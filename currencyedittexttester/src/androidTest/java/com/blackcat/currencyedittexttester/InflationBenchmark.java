@@ -0,0 +1,125 @@
+package com.blackcat.currencyedittexttester;
+
+import android.test.ActivityInstrumentationTestCase2;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+
+import com.blackcat.currencyedittext.CurrencyEditText;
+import com.blackcat.currencyedittext.CurrencyMetrics;
+import com.blackcat.currencyedittext.CurrencyMetricsListener;
+import com.blackcat.currencyedittext.CurrencyTextFormatter;
+
+import java.util.Arrays;
+
+/**
+ * Measures the cost of creating a form of CurrencyEditText fields and attaching it to a window, which is what
+ * an activity pays for every amount field in its layout when it is opened.
+ *
+ * Results are reported to logcat under the tag "InflationBenchmark". Run the benchmark on a release build
+ * of the library, with the device idle, and compare the median against that of the previous revision. Timings
+ * vary between devices, so the work behind them is checked instead: the benchmark fails if a field formats its
+ * text more than once on its way to the screen, or shows anything other than its hint before it is attached.
+ */
+public class InflationBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final String TAG = "InflationBenchmark";
+
+    private static final int FIELDS_PER_FORM = 20;
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int MEASURED_ITERATIONS = 50;
+
+    public InflationBenchmark() {
+        super(MainActivity.class);
+    }
+
+    public void testFieldFormatsTextAndHintOnce() throws Throwable {
+        final MainActivity activity = getActivity();
+        final ViewGroup root = (ViewGroup) activity.findViewById(android.R.id.content);
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                //every value the field formats is reported to the metrics listener
+                CurrencyMetricsListener previous = CurrencyTextFormatter.getMetricsListener();
+                CurrencyMetrics metrics = new CurrencyMetrics();
+                CurrencyTextFormatter.setMetricsListener(metrics);
+                try {
+                    CurrencyEditText field = new CurrencyEditText(activity, null);
+                    assertEquals("Values formatted before the field is attached", 0L, metrics.getFormatLatency().getCount());
+                    assertEquals("", field.getText().toString());
+                    CharSequence hint = field.getHint();
+                    assertNotNull("Hint set while the field is created", hint);
+
+                    final int[] textChanges = new int[1];
+                    field.addTextChangedListener(new TextWatcher() {
+                        @Override
+                        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                        }
+
+                        @Override
+                        public void onTextChanged(CharSequence s, int start, int before, int count) {
+                        }
+
+                        @Override
+                        public void afterTextChanged(Editable s) {
+                            textChanges[0]++;
+                        }
+                    });
+
+                    root.addView(field);
+                    assertEquals("Values formatted once the field is attached", 1L, metrics.getFormatLatency().getCount());
+                    assertEquals("Text changes once the field is attached", 1, textChanges[0]);
+                    assertEquals("Hint once the field is attached", hint.toString(), field.getHint().toString());
+                    assertEquals(field.formatCurrency(0L), field.getText().toString());
+
+                    root.removeView(field);
+                }
+                finally {
+                    CurrencyTextFormatter.setMetricsListener(previous);
+                }
+            }
+        });
+    }
+
+    public void testInflateAndAttachForm() throws Throwable {
+        final MainActivity activity = getActivity();
+        final ViewGroup root = (ViewGroup) activity.findViewById(android.R.id.content);
+        final long[] durations = new long[MEASURED_ITERATIONS];
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+                    long start = System.nanoTime();
+
+                    LinearLayout form = new LinearLayout(activity);
+                    for (int j = 0; j < FIELDS_PER_FORM; j++) {
+                        form.addView(new CurrencyEditText(activity, null));
+                    }
+                    root.addView(form);
+
+                    long duration = System.nanoTime() - start;
+                    if (i >= WARMUP_ITERATIONS) {
+                        durations[i - WARMUP_ITERATIONS] = duration;
+                    }
+
+                    //every field must still end up showing the formatted value once attached
+                    CurrencyEditText last = (CurrencyEditText) form.getChildAt(FIELDS_PER_FORM - 1);
+                    assertEquals(last.formatCurrency(0L), last.getText().toString());
+
+                    root.removeView(form);
+                }
+            }
+        });
+
+        Arrays.sort(durations);
+        Log.i(TAG, String.format("%d fields per form: median %.1f us, p90 %.1f us, min %.1f us",
+                FIELDS_PER_FORM,
+                durations[durations.length / 2] / 1000d,
+                durations[durations.length * 9 / 10] / 1000d,
+                durations[0] / 1000d));
+    }
+}
@@ -0,0 +1,210 @@
+package com.blackcat.currencyedittexttester;
+
+import android.os.Build;
+import android.test.ActivityInstrumentationTestCase2;
+import android.text.Editable;
+import android.util.Log;
+import android.view.ViewGroup;
+
+import com.blackcat.currencyedittext.CurrencyEditText;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Replays recorded editing sessions - typing, backspacing, pasting and editing in the middle of the number - against
+ * a CurrencyEditText attached to a window, and measures the latency of every keystroke as the user would feel it:
+ * the edit itself, the text watcher reformatting the text and the placement of the cursor.
+ *
+ * For each locale, the p50, p99 and max keystroke latencies are reported to logcat under the tag
+ * "KeystrokeReplayBenchmark" and written as JSON to keystroke-replay.json in the app's external files directory
+ * (adb pull /sdcard/Android/data/com.blackcat.currencyedittexttester/files/keystroke-replay.json). The benchmark
+ * fails if the p50 or p99 latency of any locale exceeds its threshold. Run it on a release build of the library,
+ * with the device idle.
+ */
+public class KeystrokeReplayBenchmark extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    private static final String TAG = "KeystrokeReplayBenchmark";
+    private static final String REPORT_FILE = "keystroke-replay.json";
+
+    private static final Locale[] LOCALES = {
+            Locale.US, Locale.GERMANY, Locale.JAPAN, new Locale("en", "IN"), new Locale("fr", "CH"), new Locale("ar", "EG")
+    };
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 30;
+
+    //regression thresholds for a single keystroke, which must leave most of a 16ms frame for layout and drawing
+    private static final long P50_THRESHOLD_NANOS = 500000L;
+    private static final long P99_THRESHOLD_NANOS = 4000000L;
+
+    //Recorded sessions, one step per string: "type:" types each following character, "backspace:" deletes that many
+    //characters before the cursor, "paste:" replaces the whole text and "cursor:" moves the cursor that many
+    //characters left of the end of the text.
+    private static final String[][] SESSIONS = {
+            {"type:1250", "backspace:2", "type:99"},
+            {"type:123456789", "cursor:4", "type:0", "backspace:3", "cursor:0", "backspace:9"},
+            {"paste:1234567.89", "type:5", "backspace:4", "paste:", "type:42"},
+            {"type:-75", "type:-", "backspace:1", "type:300000"},
+    };
+
+    public KeystrokeReplayBenchmark() {
+        super(MainActivity.class);
+    }
+
+    public void testReplayKeystrokes() throws Throwable {
+        final MainActivity activity = getActivity();
+        final ViewGroup root = (ViewGroup) activity.findViewById(android.R.id.content);
+        final long[][] latencies = new long[LOCALES.length][];
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                CurrencyEditText view = new CurrencyEditText(activity, null);
+                root.addView(view);
+                view.requestFocus();
+
+                for (int i = 0; i < LOCALES.length; i++) {
+                    view.editConfig().configureForLocale(LOCALES[i]).allowNegativeValues(true).apply();
+                    LatencyLog log = new LatencyLog();
+                    for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; iteration++) {
+                        log.recording = iteration >= WARMUP_ITERATIONS;
+                        for (String[] session : SESSIONS) {
+                            view.setValue(0L);
+                            replay(view, session, log);
+                        }
+                    }
+                    latencies[i] = log.toSortedArray();
+                }
+
+                root.removeView(view);
+            }
+        });
+
+        JSONArray results = new JSONArray();
+        StringBuilder regressions = new StringBuilder();
+        for (int i = 0; i < LOCALES.length; i++) {
+            long[] sorted = latencies[i];
+            long p50 = percentile(sorted, 50);
+            long p99 = percentile(sorted, 99);
+            boolean passed = p50 <= P50_THRESHOLD_NANOS && p99 <= P99_THRESHOLD_NANOS;
+            if (!passed) {
+                regressions.append(' ').append(LOCALES[i]);
+            }
+
+            results.put(new JSONObject()
+                    .put("locale", LOCALES[i].toString())
+                    .put("keystrokes", sorted.length)
+                    .put("p50Nanos", p50)
+                    .put("p99Nanos", p99)
+                    .put("maxNanos", sorted[sorted.length - 1])
+                    .put("passed", passed));
+            Log.i(TAG, String.format("%s: %d keystrokes, p50 %.1f us, p99 %.1f us, max %.1f us",
+                    LOCALES[i], sorted.length, p50 / 1000d, p99 / 1000d, sorted[sorted.length - 1] / 1000d));
+        }
+
+        JSONObject report = new JSONObject()
+                .put("benchmark", TAG)
+                .put("device", Build.MANUFACTURER + " " + Build.MODEL)
+                .put("sdkInt", Build.VERSION.SDK_INT)
+                .put("thresholds", new JSONObject()
+                        .put("p50Nanos", P50_THRESHOLD_NANOS)
+                        .put("p99Nanos", P99_THRESHOLD_NANOS))
+                .put("results", results);
+        writeReport(activity, report.toString(2));
+        Log.i(TAG, report.toString());
+
+        assertTrue("Keystroke latency exceeded its threshold for" + regressions, regressions.length() == 0);
+    }
+
+    private static void replay(CurrencyEditText view, String[] session, LatencyLog log) {
+        for (String step : session) {
+            int separator = step.indexOf(':');
+            String action = step.substring(0, separator);
+            String argument = step.substring(separator + 1);
+
+            if (action.equals("type")) {
+                for (int i = 0; i < argument.length(); i++) {
+                    Editable text = view.getText();
+                    long start = System.nanoTime();
+                    text.insert(view.getSelectionEnd(), argument.subSequence(i, i + 1));
+                    log.add(System.nanoTime() - start);
+                }
+            }
+            else if (action.equals("backspace")) {
+                for (int i = Integer.parseInt(argument); i > 0; i--) {
+                    Editable text = view.getText();
+                    int end = view.getSelectionEnd();
+                    if (end == 0) {
+                        break;
+                    }
+                    long start = System.nanoTime();
+                    text.delete(end - 1, end);
+                    log.add(System.nanoTime() - start);
+                }
+            }
+            else if (action.equals("paste")) {
+                Editable text = view.getText();
+                long start = System.nanoTime();
+                text.replace(0, text.length(), argument);
+                log.add(System.nanoTime() - start);
+            }
+            else if (action.equals("cursor")) {
+                view.setSelection(Math.max(view.getText().length() - Integer.parseInt(argument), 0));
+            }
+            else {
+                throw new IllegalArgumentException("Unknown step " + step);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(sorted.length * percentile / 100d) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    private static void writeReport(MainActivity activity, String json) throws Exception {
+        File directory = activity.getExternalFilesDir(null);
+        File file = new File(directory != null ? directory : activity.getFilesDir(), REPORT_FILE);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(json);
+        }
+        finally {
+            writer.close();
+        }
+        Log.i(TAG, "Report written to " + file.getAbsolutePath());
+    }
+
+    /**
+     * A growable list of latencies, which only records while recording is set.
+     */
+    private static final class LatencyLog {
+        boolean recording;
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long nanos) {
+            if (!recording) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
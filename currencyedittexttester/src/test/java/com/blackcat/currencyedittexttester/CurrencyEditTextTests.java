@@ -1,9 +1,24 @@
 package com.blackcat.currencyedittexttester;
 
 import android.annotation.SuppressLint;
+import android.content.Intent;
 import android.os.Build;
-
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.text.Editable;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import com.blackcat.currencyedittext.CacheStats;
 import com.blackcat.currencyedittext.CurrencyEditText;
+import com.blackcat.currencyedittext.CurrencyFormatSpec;
+import com.blackcat.currencyedittext.CurrencyFormatter;
+import com.blackcat.currencyedittext.CurrencyTextFormatter;
+import com.blackcat.currencyedittext.OnRawValueChangedListener;
+import com.blackcat.currencyedittext.ParseResult;
 import com.mnw.dataset.DataSet;
 import com.mnw.dataset.DataSetRule;
 import com.mnw.dataset.InvalidDataSetException;
@@ -15,16 +30,27 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
 
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * A collection of test cases for CurrencyEditText
@@ -270,4 +296,501 @@ public class CurrencyEditTextTests {
 
         assertThat(currencyEditText.getText().toString(), is(equalTo("")));
     }
+
+    @Test
+    public void RepeatedFormattingReusesCachedFormatterTest(){
+        currencyEditText.formatCurrency(100);
+        CacheStats before = CurrencyTextFormatter.getFormatterCacheStats();
+
+        currencyEditText.formatCurrency(200);
+        currencyEditText.formatCurrency(300);
+        CacheStats after = CurrencyTextFormatter.getFormatterCacheStats();
+
+        assertThat(after.getHitCount() - before.getHitCount(), is(equalTo(2L)));
+        assertThat(after.getMissCount(), is(equalTo(before.getMissCount())));
+    }
+
+    @Test
+    public void FormatLargeValueWithoutLosingPrecisionTest(){
+        String result = currencyEditText.formatCurrency(1234567890123456789L);
+
+        assertThat(result, is(equalTo("$12,345,678,901,234,567.89")));
+    }
+
+    @Test
+    public void FormatSpecWritesIntoReusableBufferTest(){
+        CurrencyFormatSpec spec = CurrencyTextFormatter.getFormatSpec(Locale.US, Locale.US, 2);
+        char[] buffer = new char[spec.getMaxLength()];
+
+        int length = spec.format(-123456L, buffer, 0);
+
+        assertThat(new String(buffer, 0, length), is(equalTo(CurrencyTextFormatter.formatText("-123456", Locale.US, Locale.US, 2))));
+    }
+
+    @Test
+    public void FormatCurrencyArrayMatchesSingleValueFormattingTest(){
+        long[] values = {0L, 5L, -1337L, 100000L};
+
+        String[] results = currencyEditText.formatCurrency(values);
+
+        for(int i = 0; i < values.length; i++){
+            assertThat(results[i], is(equalTo(currencyEditText.formatCurrency(values[i]))));
+        }
+    }
+
+    @Test
+    public void ParseFormattedTextReturnsRawValueTest(){
+        CurrencyFormatSpec spec = CurrencyTextFormatter.getFormatSpec(Locale.US, Locale.US, 2);
+
+        ParseResult result = CurrencyTextFormatter.parse("-$1,234.56", spec);
+
+        assertThat(result.isValid(), is(true));
+        assertThat(result.getValue(), is(equalTo(-123456L)));
+    }
+
+    @Test
+    public void ParseReportsOverflowWithoutThrowingTest(){
+        CurrencyFormatSpec spec = CurrencyTextFormatter.getFormatSpec(Locale.US, Locale.US, 2);
+
+        ParseResult result = CurrencyTextFormatter.parse("$92,233,720,368,547,758.08", spec);
+
+        assertThat(result.isOverflow(), is(true));
+        assertThat(result.hasValue(), is(false));
+    }
+
+    @Test
+    public void ParseCountsUnrecognizedCharactersTest(){
+        CurrencyFormatSpec spec = CurrencyTextFormatter.getFormatSpec(Locale.US, Locale.US, 2);
+
+        ParseResult result = CurrencyTextFormatter.parse("$1a2b", spec);
+
+        assertThat(result.getValue(), is(equalTo(12L)));
+        assertThat(result.getInvalidCharCount(), is(equalTo(2)));
+        assertThat(result.isValid(), is(false));
+    }
+
+    @Test
+    public void TypingAndDeletingDigitsUpdatesRawValueTest(){
+        currencyEditText.setValue(1234);
+
+        int end = currencyEditText.getSelectionEnd();
+        currencyEditText.getText().insert(end, "5");
+        assertThat(currencyEditText.getRawValue(), is(equalTo(12345L)));
+        assertThat(currencyEditText.getText().toString(), is(equalTo("$123.45")));
+
+        end = currencyEditText.getSelectionEnd();
+        currencyEditText.getText().delete(end - 1, end);
+        assertThat(currencyEditText.getRawValue(), is(equalTo(1234L)));
+        assertThat(currencyEditText.getText().toString(), is(equalTo("$12.34")));
+    }
+
+    @Test
+    public void TypingMinusSignTogglesNegativityTest(){
+        currencyEditText.setAllowNegativeValues(true);
+        currencyEditText.setValue(1234);
+
+        currencyEditText.getText().insert(currencyEditText.getSelectionEnd(), "-");
+        assertThat(currencyEditText.getRawValue(), is(equalTo(-1234L)));
+
+        currencyEditText.getText().insert(currencyEditText.getSelectionEnd(), "-");
+        assertThat(currencyEditText.getRawValue(), is(equalTo(1234L)));
+    }
+
+    @Test
+    public void TypingDigitEditsTextInPlaceTest(){
+        currencyEditText.setValue(1234);
+        Editable text = currencyEditText.getText();
+
+        text.insert(currencyEditText.getSelectionEnd(), "5");
+
+        assertThat(currencyEditText.getText(), is(sameInstance(text)));
+        assertThat(text.toString(), is(equalTo("$123.45")));
+    }
+
+    @Test
+    public void EditingMiddleOfValueKeepsCursorInPlaceTest(){
+        currencyEditText.setValue(123456);
+        Editable text = currencyEditText.getText();
+
+        //"$1|,234.56" -> "$19|,234.56"
+        text.insert(2, "9");
+        assertThat(text.toString(), is(equalTo("$19,234.56")));
+        assertThat(currencyEditText.getSelectionEnd(), is(equalTo(3)));
+
+        //"$19|,234.56" -> "$1|,234.56"
+        text.delete(2, 3);
+        assertThat(text.toString(), is(equalTo("$1,234.56")));
+        assertThat(currencyEditText.getSelectionEnd(), is(equalTo(2)));
+
+        //deleting the grouping separator only moves the cursor past it: "$1,|234.56" -> "$1|,234.56"
+        text.delete(2, 3);
+        assertThat(text.toString(), is(equalTo("$1,234.56")));
+        assertThat(currencyEditText.getSelectionEnd(), is(equalTo(2)));
+    }
+
+    @Test
+    public void DetachedViewFormatsTextOnceAttachedTest() {
+        MainActivity activity = Robolectric.setupActivity(MainActivity.class);
+        CurrencyEditText view = new CurrencyEditText(activity, null);
+        view.setDecimalDigits(3);
+
+        assertThat(view.getText().toString(), is(equalTo("")));
+        assertThat(view.getHintString(), is(equalTo("$")));
+
+        ((ViewGroup) activity.findViewById(android.R.id.content)).addView(view);
+
+        assertThat(view.getText().toString(), is(equalTo("$0.000")));
+        assertThat(view.getRawValue(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void EditConfigAppliesAllChangesTogetherTest() {
+        currencyEditText.setValue(1000L);
+
+        currencyEditText.editConfig()
+                .configureForLocale(Locale.JAPAN)
+                .decimalDigits(3)
+                .allowNegativeValues(true)
+                .apply();
+
+        assertThat(currencyEditText.getLocale(), is(equalTo(Locale.JAPAN)));
+        assertThat(currencyEditText.getDecimalDigits(), is(equalTo(3)));
+        assertThat(currencyEditText.areNegativeValuesAllowed(), is(true));
+        assertThat(currencyEditText.getRawValue(), is(equalTo(1000L)));
+        assertThat(currencyEditText.getText().toString(), is(equalTo(currencyEditText.formatCurrency(1000L))));
+    }
+
+    @Test
+    public void EditConfigWithInvalidDecimalDigitsChangesNothingTest() {
+        Locale locale = currencyEditText.getLocale();
+
+        try {
+            currencyEditText.editConfig().locale(Locale.JAPAN).decimalDigits(341).apply();
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            assertThat(currencyEditText.getLocale(), is(equalTo(locale)));
+        }
+    }
+
+    @Test
+    public void ExactModeHoldsValuesBeyondLongRangeTest() {
+        currencyEditText.setExactMode(true);
+        currencyEditText.setValueExact(new BigInteger("123456789012345678901234"));
+
+        assertThat(currencyEditText.getText().toString(), is(equalTo("$1,234,567,890,123,456,789,012.34")));
+
+        currencyEditText.getText().insert(currencyEditText.getSelectionEnd(), "5");
+
+        assertThat(currencyEditText.getRawValueExact(), is(equalTo(new BigInteger("1234567890123456789012345"))));
+        assertThat(currencyEditText.getText().toString(), is(equalTo("$12,345,678,901,234,567,890,123.45")));
+    }
+
+    @Test
+    public void MirrorsFollowRawValueChangesTest() {
+        TextView euros = new TextView(currencyEditText.getContext());
+        TextView yen = new TextView(currencyEditText.getContext());
+        currencyEditText.addMirror(euros, Locale.GERMANY, 9215L, 4);
+        currencyEditText.addMirror(yen, Locale.JAPAN, 15125L, 2);
+
+        currencyEditText.setValue(1000L);
+        currencyEditText.getText().insert(currencyEditText.getSelectionEnd(), "0");
+
+        assertThat(currencyEditText.getRawValue(), is(equalTo(10000L)));
+        assertThat(euros.getText().toString(), is(equalTo(CurrencyTextFormatter.formatText("9215", Locale.GERMANY, Locale.US, 2))));
+        assertThat(yen.getText().toString(), is(equalTo(CurrencyTextFormatter.formatText("15125", Locale.JAPAN, Locale.US, 0))));
+
+        currencyEditText.setMirrorRate(euros, 1L, 0);
+        assertThat(euros.getText().toString(), is(equalTo(CurrencyTextFormatter.formatText("10000", Locale.GERMANY, Locale.US, 2))));
+
+        currencyEditText.removeMirror(yen);
+        currencyEditText.setValue(0L);
+        assertThat(yen.getText().toString(), is(equalTo(CurrencyTextFormatter.formatText("15125", Locale.JAPAN, Locale.US, 0))));
+    }
+
+    @Test
+    public void RawValueListenerIsCalledOncePerChangeTest() {
+        final List<long[]> changes = new ArrayList<>();
+        currencyEditText.setValue(100L);
+        currencyEditText.setOnRawValueChangedListener(new OnRawValueChangedListener() {
+            @Override
+            public void onRawValueChanged(long oldValue, long newValue) {
+                changes.add(new long[]{oldValue, newValue});
+            }
+        });
+
+        currencyEditText.getText().insert(currencyEditText.getSelectionEnd(), "5");
+        //neither a character which doesn't change the value nor setting the same value again are reported
+        currencyEditText.getText().insert(2, ",");
+        currencyEditText.setValue(1005L);
+
+        assertThat(changes.size(), is(equalTo(1)));
+        assertThat(changes.get(0)[0], is(equalTo(100L)));
+        assertThat(changes.get(0)[1], is(equalTo(1005L)));
+    }
+
+    @Test
+    public void CoalescedRawValueListenerReportsBurstOnceTest() {
+        final List<long[]> changes = new ArrayList<>();
+        final List<Runnable> delivered = new ArrayList<>();
+        currencyEditText.setValue(0L);
+        currencyEditText.setOnRawValueChangedListener(new OnRawValueChangedListener() {
+            @Override
+            public void onRawValueChanged(long oldValue, long newValue) {
+                changes.add(new long[]{oldValue, newValue});
+            }
+        }, 300, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                delivered.add(command);
+                command.run();
+            }
+        });
+
+        Editable text = currencyEditText.getText();
+        text.insert(currencyEditText.getSelectionEnd(), "1");
+        text.insert(currencyEditText.getSelectionEnd(), "2");
+        text.insert(currencyEditText.getSelectionEnd(), "3");
+        assertThat(changes.size(), is(equalTo(0)));
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+
+        assertThat(delivered.size(), is(equalTo(1)));
+        assertThat(changes.size(), is(equalTo(1)));
+        assertThat(changes.get(0)[0], is(equalTo(0L)));
+        assertThat(changes.get(0)[1], is(equalTo(123L)));
+    }
+
+    @Test
+    public void InvalidInputIsFilteredBeforeReachingTextTest() {
+        currencyEditText.setValue(0L);
+        currencyEditText.setMaxDigits(4);
+        Editable text = currencyEditText.getText();
+
+        //letters and minus signs are dropped, as are digits beyond the limit
+        text.insert(currencyEditText.getSelectionEnd(), "1a2-3,456");
+        assertThat(currencyEditText.getRawValue(), is(equalTo(1234L)));
+        assertThat(text.toString(), is(equalTo("$12.34")));
+
+        text.insert(currencyEditText.getSelectionEnd(), "7");
+        assertThat(text.toString(), is(equalTo("$12.34")));
+
+        //values set by the application are not limited
+        currencyEditText.setValue(123456L);
+        assertThat(text.toString(), is(equalTo("$1,234.56")));
+    }
+
+    @Test
+    public void RestoredStateKeepsValueAndConfigurationTest() {
+        currencyEditText.setAllowNegativeValues(true);
+        currencyEditText.setDecimalDigits(3);
+        currencyEditText.setValue(-12345L);
+        Parcelable state = currencyEditText.onSaveInstanceState();
+
+        CurrencyEditText restored = new CurrencyEditText(currencyEditText.getContext(), null);
+        restored.onRestoreInstanceState(state);
+
+        assertThat(restored.getRawValue(), is(equalTo(-12345L)));
+        assertThat(restored.getDecimalDigits(), is(equalTo(3)));
+        assertThat(restored.areNegativeValuesAllowed(), is(true));
+        assertThat(restored.getText().toString(), is(equalTo("-$12.345")));
+    }
+
+    @Test
+    public void RestoredStateKeepsClearedFieldEmptyTest() {
+        currencyEditText.setValue(500L);
+        currencyEditText.setText("");
+        Parcelable state = currencyEditText.onSaveInstanceState();
+
+        CurrencyEditText restored = new CurrencyEditText(currencyEditText.getContext(), null);
+        restored.setValue(700L);
+        restored.onRestoreInstanceState(state);
+
+        assertThat(restored.getText().toString(), is(equalTo("")));
+        assertThat(restored.getRawValue(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void RestoredStateKeepsNullLocalesThroughParcelTest() throws Exception {
+        currencyEditText.setLocale(null);
+        currencyEditText.setDefaultLocale(null);
+        currencyEditText.setValue(12345L);
+        String text = currencyEditText.getText().toString();
+        Parcelable state = currencyEditText.onSaveInstanceState();
+
+        //write the state out and read it back, as the framework does when the process is recreated
+        Parcel parcel = Parcel.obtain();
+        Parcelable unparceled;
+        try{
+            state.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            Field creatorField = state.getClass().getField("CREATOR");
+            creatorField.setAccessible(true);
+            unparceled = (Parcelable) ((Parcelable.Creator<?>) creatorField.get(null)).createFromParcel(parcel);
+        }
+        finally{
+            parcel.recycle();
+        }
+
+        CurrencyEditText restored = new CurrencyEditText(currencyEditText.getContext(), null);
+        restored.onRestoreInstanceState(unparceled);
+
+        assertThat(restored.getLocale(), is(nullValue()));
+        assertThat(restored.getDefaultLocale(), is(nullValue()));
+        assertThat(restored.getRawValue(), is(equalTo(12345L)));
+        assertThat(restored.getText().toString(), is(equalTo(text)));
+    }
+
+    @Test
+    public void FieldsWithSameConfigurationShareFormatterTest() {
+        CurrencyEditText other = new CurrencyEditText(currencyEditText.getContext(), null);
+        other.setLocale(currencyEditText.getLocale());
+
+        assertThat(other.getCurrencyFormatter() == currencyEditText.getCurrencyFormatter(), is(true));
+
+        other.setDecimalDigits(3);
+        assertThat(other.getCurrencyFormatter() == currencyEditText.getCurrencyFormatter(), is(false));
+    }
+
+    @Test
+    public void LocaleChangeRefreshesAttachedFieldsAndDetachedOnesOnceAttachedTest() {
+        MainActivity activity = Robolectric.setupActivity(MainActivity.class);
+        ViewGroup root = (ViewGroup) activity.findViewById(android.R.id.content);
+        CurrencyEditText first = new CurrencyEditText(activity, null);
+        CurrencyEditText second = new CurrencyEditText(activity, null);
+        CurrencyEditText detached = new CurrencyEditText(activity, null);
+        for (CurrencyEditText field : new CurrencyEditText[]{first, second, detached}) {
+            field.setLocale(Locale.US);
+            root.addView(field);
+            field.setValue(100L);
+        }
+        root.removeView(detached);
+        CurrencyFormatter formatterBefore = first.getCurrencyFormatter();
+        assertThat(first.getHint().toString(), is(equalTo("$")));
+
+        //the symbol of the field's currency depends on the system locale
+        Locale systemLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.CANADA);
+            RuntimeEnvironment.application.sendBroadcast(new Intent(Intent.ACTION_LOCALE_CHANGED));
+            ShadowLooper.idleMainLooper();
+
+            //one broadcast refreshes every attached field, which share a freshly resolved configuration
+            assertThat(first.getHint().toString(), is(equalTo("US$")));
+            assertThat(second.getHint().toString(), is(equalTo("US$")));
+            assertThat(first.getCurrencyFormatter(), is(not(sameInstance(formatterBefore))));
+            assertThat(second.getCurrencyFormatter(), is(sameInstance(first.getCurrencyFormatter())));
+            assertThat(first.getText().toString(), is(equalTo("$1.00")));
+
+            //a detached field keeps its configuration until it is attached again
+            assertThat(detached.getHint().toString(), is(equalTo("$")));
+            root.addView(detached);
+            assertThat(detached.getHint().toString(), is(equalTo("US$")));
+            assertThat(detached.getText().toString(), is(equalTo("$1.00")));
+        }
+        finally {
+            Locale.setDefault(systemLocale);
+            CurrencyTextFormatter.clearFormatterCache();
+        }
+    }
+
+    @Test
+    public void StableLayoutOnlyManagesWrappedWidthTest() {
+        currencyEditText.setLayoutParams(new ViewGroup.LayoutParams(300, ViewGroup.LayoutParams.WRAP_CONTENT));
+        currencyEditText.setStableLayout(true);
+        currencyEditText.setValue(123456789L);
+        assertThat(currencyEditText.getLayoutParams().width, is(equalTo(300)));
+
+        currencyEditText.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        currencyEditText.setValue(42L);
+        currencyEditText.setStableLayout(false);
+        assertThat(currencyEditText.getLayoutParams().width, is(equalTo(ViewGroup.LayoutParams.WRAP_CONTENT)));
+    }
+
+    @Test
+    public void StableLayoutKeepsWidthWithinClassTest() {
+        CurrencyEditText field = createMeasurableField();
+        FrameLayout parent = new FrameLayout(field.getContext());
+        parent.addView(field, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        field.setStableLayout(true);
+        field.setValue(0L);
+
+        //"$0.01" takes a class width of its own, rather than wrapping its content
+        type(field, "1");
+        int width = field.getLayoutParams().width;
+        assertThat(width > 0, is(true));
+
+        //"$0.12" to "$123.45" stay within the class
+        for (String key : new String[]{"2", "3", "4", "5"}) {
+            type(field, key);
+            assertThat(field.getText().toString(), field.getLayoutParams().width, is(equalTo(width)));
+        }
+
+        //"$1,234.56" moves to the next class
+        type(field, "6");
+        assertThat(field.getLayoutParams().width > width, is(true));
+    }
+
+    @Test
+    public void AutoShrinkScalesLongAmountsDownToMinimumTest() {
+        CurrencyEditText field = createMeasurableField();
+        field.setAutoShrink(true);
+        field.layout(0, 0, 10, 100);
+
+        field.setValue(100L);
+        assertThat(field.getTextSize(), is(equalTo(40f)));
+
+        field.setValue(123456789L);
+        assertThat(field.getTextSize() < 40f, is(true));
+        assertThat(field.getTextSize() >= 20f, is(true));
+
+        field.setShrinkMinTextSize(35f);
+        assertThat(field.getTextSize(), is(equalTo(35f)));
+
+        field.setValue(1L);
+        assertThat(field.getTextSize(), is(equalTo(40f)));
+    }
+
+    @Test
+    public void AttributesAreAppliedTogetherTest() {
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.decimal_digits, "3")
+                .addAttribute(R.attr.exact_mode, "true")
+                .addAttribute(R.attr.allow_negative_values, "true")
+                .addAttribute(R.attr.max_digits, "7")
+                .build();
+        CurrencyEditText field = new CurrencyEditText(currencyEditText.getContext(), attrs);
+        field.setLocale(Locale.US);
+
+        assertThat(field.getDecimalDigits(), is(equalTo(3)));
+        assertThat(field.isExactMode(), is(true));
+        assertThat(field.areNegativeValuesAllowed(), is(true));
+        assertThat(field.getMaxDigits(), is(equalTo(7)));
+        assertThat(field.getHint().toString(), is(equalTo("$")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void SetValueExactBeyondLongRangeRequiresExactModeTest() {
+        currencyEditText.setValueExact(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE));
+    }
+
+    /**
+     * A field whose width is that of its text alone, without padding or a background.
+     */
+    private CurrencyEditText createMeasurableField() {
+        CurrencyEditText field = new CurrencyEditText(currencyEditText.getContext(), null);
+        field.setLocale(Locale.US);
+        field.setBackgroundDrawable(null);
+        field.setMinimumWidth(0);
+        field.setPadding(0, 0, 0, 0);
+        field.setTextSize(TypedValue.COMPLEX_UNIT_PX, 40f);
+        return field;
+    }
+
+    /**
+     * Types keys at the cursor, as the keyboard would.
+     */
+    private static void type(CurrencyEditText field, String keys) {
+        field.getText().insert(field.getSelectionEnd(), keys);
+    }
 }